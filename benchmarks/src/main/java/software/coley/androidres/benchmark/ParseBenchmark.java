@@ -0,0 +1,53 @@
+package software.coley.androidres.benchmark;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures construction of {@link BinaryResourceFile} models, in both eager and lazy parse modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+	@Param({"false", "true"})
+	public boolean lazy;
+	@Param({"5000"})
+	public int tableEntries;
+	private List<byte[]> xmlSamples;
+	private byte[] table;
+
+	@Setup
+	public void setup() {
+		xmlSamples = Samples.loadXmlSamples();
+		table = SyntheticResourceTable.generate(8, tableEntries, 4);
+	}
+
+	@Benchmark
+	public void parseXmlSamples(Blackhole blackhole) {
+		for (byte[] sample : xmlSamples)
+			blackhole.consume(new BinaryResourceFile(sample, lazy));
+	}
+
+	@Benchmark
+	public BinaryResourceFile parseTable() {
+		return new BinaryResourceFile(table, lazy);
+	}
+}
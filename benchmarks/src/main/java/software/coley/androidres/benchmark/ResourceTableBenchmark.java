@@ -0,0 +1,79 @@
+package software.coley.androidres.benchmark;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.PackageChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.TypeChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures access to a parsed resource table: string pool lookups and type chunk entry iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceTableBenchmark {
+	@Param({"false", "true"})
+	public boolean lazy;
+	@Param({"5000"})
+	public int tableEntries;
+	private StringPoolChunk stringPool;
+	private Collection<TypeChunk> typeChunks;
+	private String[] lookups;
+
+	@Setup
+	public void setup() {
+		BinaryResourceFile file = new BinaryResourceFile(SyntheticResourceTable.generate(8, tableEntries, 4), lazy);
+		ResourceTableChunk table = (ResourceTableChunk) file.getChunks().get(0);
+		PackageChunk packageChunk = table.getPackages().iterator().next();
+		stringPool = table.getStringPool();
+		typeChunks = packageChunk.getTypeChunks();
+
+		// Lookups are copies, so they are not found by identity
+		List<String> strings = new ArrayList<>();
+		for (int i = 0; i < stringPool.getStringCount(); i += 7)
+			strings.add(new String(stringPool.getString(i)));
+		strings.add("missing");
+		lookups = strings.toArray(new String[0]);
+	}
+
+	@Benchmark
+	public void stringPoolGetString(Blackhole blackhole) {
+		for (int i = 0, count = stringPool.getStringCount(); i < count; i++)
+			blackhole.consume(stringPool.getString(i));
+	}
+
+	@Benchmark
+	public void stringPoolIndexOf(Blackhole blackhole) {
+		for (String lookup : lookups)
+			blackhole.consume(stringPool.indexOf(lookup));
+	}
+
+	@Benchmark
+	public void typeChunkEntries(Blackhole blackhole) {
+		for (TypeChunk typeChunk : typeChunks)
+			for (Map.Entry<Integer, TypeChunk.Entry> entry : typeChunk.getEntries().entrySet())
+				blackhole.consume(entry.getValue());
+	}
+}
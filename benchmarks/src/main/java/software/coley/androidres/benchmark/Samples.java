@@ -0,0 +1,101 @@
+package software.coley.androidres.benchmark;
+
+import software.coley.android.xml.AndroidResourceProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Inputs shared by the benchmarks.
+ */
+final class Samples {
+	/**
+	 * System property pointing to the directory containing the binary XML sample sets.
+	 * Defaults to the test resources of the main project, relative to this module.
+	 */
+	static final String SAMPLES_DIR_PROPERTY = "samples.dir";
+	private static final String[] SAMPLE_SETS = {"normal", "janky"};
+	/**
+	 * Resource provider that knows no resources, so decoding measures the decoder rather than lookups.
+	 */
+	static final AndroidResourceProvider EMPTY_PROVIDER = new AndroidResourceProvider() {
+		@Override
+		public boolean hasResName(int resId) {
+			return false;
+		}
+
+		@Nullable
+		@Override
+		public String getResName(int resId) {
+			return null;
+		}
+
+		@Override
+		public boolean hasResFlag(@Nonnull String resName) {
+			return false;
+		}
+
+		@Nullable
+		@Override
+		public String getResFlagNames(@Nonnull String resName, long mask) {
+			return null;
+		}
+
+		@Override
+		public boolean hasResEnum(@Nonnull String resName) {
+			return false;
+		}
+
+		@Nullable
+		@Override
+		public String getResEnumName(@Nonnull String resName, long value) {
+			return null;
+		}
+	};
+
+	private Samples() {
+	}
+
+	/**
+	 * @return Contents of all binary XML samples, both normal and tampered with.
+	 */
+	@Nonnull
+	static List<byte[]> loadXmlSamples() {
+		Path root = Paths.get(System.getProperty(SAMPLES_DIR_PROPERTY, "../src/test/resources"));
+		List<byte[]> samples = new ArrayList<>();
+		for (String set : SAMPLE_SETS) {
+			Path directory = root.resolve(set);
+			if (!Files.isDirectory(directory))
+				continue;
+			try (Stream<Path> files = Files.list(directory)) {
+				files.filter(Files::isRegularFile)
+						.sorted()
+						.map(Samples::read)
+						.forEach(samples::add);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		if (samples.isEmpty())
+			throw new IllegalStateException("No samples found in " + root.toAbsolutePath() +
+					", set -D" + SAMPLES_DIR_PROPERTY + " to the sample directory");
+		return samples;
+	}
+
+	@Nonnull
+	private static byte[] read(@Nonnull Path path) {
+		try {
+			return Files.readAllBytes(path);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
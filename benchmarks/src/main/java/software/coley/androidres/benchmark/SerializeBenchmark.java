@@ -0,0 +1,57 @@
+package software.coley.androidres.benchmark;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures serialization of parsed models back into their binary form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+	@Param({"false", "true"})
+	public boolean shrink;
+	@Param({"5000"})
+	public int tableEntries;
+	private List<BinaryResourceFile> xmlFiles;
+	private BinaryResourceFile table;
+
+	@Setup
+	public void setup() {
+		xmlFiles = Samples.loadXmlSamples().stream()
+				.map(BinaryResourceFile::new)
+				.collect(Collectors.toList());
+		table = new BinaryResourceFile(SyntheticResourceTable.generate(8, tableEntries, 4));
+	}
+
+	@Benchmark
+	public void serializeXmlSamples(Blackhole blackhole) throws IOException {
+		for (BinaryResourceFile file : xmlFiles)
+			blackhole.consume(file.toByteArray(shrink));
+	}
+
+	@Benchmark
+	public byte[] serializeTable() throws IOException {
+		return table.toByteArray(shrink);
+	}
+}
@@ -0,0 +1,190 @@
+package software.coley.androidres.benchmark;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates {@code resources.arsc} tables of arbitrary size, for benchmarking tables far larger than the samples.
+ * <p>
+ * The table has a single package {@code 0x7f}. Its first type holds attribute-like complex entries on every
+ * third entry, all other entries are simple string or integer values. Every type has one default configuration
+ * which defines all entries, and additional density/sdk configurations which define a sparse subset of entries.
+ */
+public final class SyntheticResourceTable {
+	private static final int PACKAGE_ID = 0x7f;
+	private static final int PACKAGE_HEADER_SIZE = 288;
+	private static final int STRING_POOL_HEADER_SIZE = 28;
+	private static final int TYPE_HEADER_SIZE = 20;
+	private static final int CONFIG_SIZE = 64;
+	private static final int UTF8_FLAG = 1 << 8;
+
+	private SyntheticResourceTable() {
+	}
+
+	/**
+	 * @param typeCount
+	 * 		Number of resource types.
+	 * @param entryCount
+	 * 		Number of entries per type.
+	 * @param configCount
+	 * 		Number of configurations per type, including the default configuration.
+	 *
+	 * @return Serialized resource table.
+	 */
+	@Nonnull
+	public static byte[] generate(int typeCount, int entryCount, int configCount) {
+		List<String> values = new ArrayList<>(entryCount);
+		List<String> typeNames = new ArrayList<>(typeCount);
+		List<String> keys = new ArrayList<>(entryCount);
+		for (int t = 0; t < typeCount; t++)
+			typeNames.add(t == 0 ? "attr" : t == 1 ? "string" : "type" + t);
+		for (int e = 0; e < entryCount; e++) {
+			keys.add("key_" + e);
+			values.add("value_\u00e9_" + e);
+		}
+
+		ByteArrayOutputStream packageBody = new ByteArrayOutputStream();
+		byte[] typePool = stringPool(typeNames, false);
+		byte[] keyPool = stringPool(keys, true);
+		packageBody.write(typePool, 0, typePool.length);
+		packageBody.write(keyPool, 0, keyPool.length);
+		for (int t = 0; t < typeCount; t++) {
+			byte[] spec = typeSpec(t + 1, entryCount);
+			packageBody.write(spec, 0, spec.length);
+			for (int c = 0; c < configCount; c++) {
+				byte[] type = type(t, c, entryCount);
+				packageBody.write(type, 0, type.length);
+			}
+		}
+
+		int packageSize = PACKAGE_HEADER_SIZE + packageBody.size();
+		ByteBuffer pkg = ByteBuffer.allocate(packageSize).order(ByteOrder.LITTLE_ENDIAN);
+		pkg.putShort((short) 0x0200).putShort((short) PACKAGE_HEADER_SIZE).putInt(packageSize).putInt(PACKAGE_ID);
+		pkg.put("com.example.synthetic".getBytes(StandardCharsets.UTF_16LE));
+		pkg.position(12 + 256);
+		pkg.putInt(PACKAGE_HEADER_SIZE) // Type strings offset
+				.putInt(typeCount) // Last public type
+				.putInt(PACKAGE_HEADER_SIZE + typePool.length) // Key strings offset
+				.putInt(entryCount) // Last public key
+				.putInt(0); // Type id offset
+		pkg.put(packageBody.toByteArray());
+
+		byte[] valuePool = stringPool(values, true);
+		int tableSize = 12 + valuePool.length + packageSize;
+		ByteBuffer table = ByteBuffer.allocate(tableSize).order(ByteOrder.LITTLE_ENDIAN);
+		table.putShort((short) 0x0002).putShort((short) 12).putInt(tableSize).putInt(1);
+		table.put(valuePool).put(pkg.array());
+		return table.array();
+	}
+
+	@Nonnull
+	private static byte[] typeSpec(int typeId, int entryCount) {
+		ByteBuffer spec = ByteBuffer.allocate(16 + entryCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+		spec.putShort((short) 0x0202).putShort((short) 16).putInt(spec.capacity());
+		spec.put((byte) typeId).put((byte) 0).putShort((short) 0).putInt(entryCount);
+		return spec.array(); // Entry flags are all zero
+	}
+
+	@Nonnull
+	private static byte[] type(int typeIndex, int configIndex, int entryCount) {
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		int[] offsets = new int[entryCount];
+		for (int e = 0; e < entryCount; e++) {
+			// Non-default configurations only override some entries
+			if (configIndex > 0 && e % (configIndex + 1) != 0) {
+				offsets[e] = -1;
+				continue;
+			}
+			offsets[e] = entries.size();
+			byte[] entry = typeIndex == 0 && e % 3 == 0 ? complexEntry(e) : simpleEntry(typeIndex, configIndex, e);
+			entries.write(entry, 0, entry.length);
+		}
+
+		int headerSize = TYPE_HEADER_SIZE + CONFIG_SIZE;
+		int size = headerSize + entryCount * 4 + entries.size();
+		ByteBuffer type = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		type.putShort((short) 0x0201).putShort((short) headerSize).putInt(size);
+		type.put((byte) (typeIndex + 1)).put((byte) 0).putShort((short) 0);
+		type.putInt(entryCount).putInt(headerSize + entryCount * 4);
+		type.put(config(configIndex == 0 ? 0 : 160 * configIndex, configIndex));
+		for (int offset : offsets)
+			type.putInt(offset);
+		type.put(entries.toByteArray());
+		return type.array();
+	}
+
+	@Nonnull
+	private static byte[] simpleEntry(int typeIndex, int configIndex, int entryIndex) {
+		boolean string = typeIndex == 1;
+		ByteBuffer entry = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		entry.putShort((short) 8).putShort((short) 0).putInt(entryIndex);
+		entry.putShort((short) 8).put((byte) 0).put((byte) (string ? 0x03 : 0x10));
+		entry.putInt(string ? entryIndex : entryIndex * 7 + configIndex);
+		return entry.array();
+	}
+
+	@Nonnull
+	private static byte[] complexEntry(int entryIndex) {
+		ByteBuffer entry = ByteBuffer.allocate(16 + 2 * 12).order(ByteOrder.LITTLE_ENDIAN);
+		entry.putShort((short) 16).putShort((short) 1).putInt(entryIndex).putInt(0).putInt(2);
+		// Attribute type (flags) and a single flag value
+		entry.putInt(0x01000000).putShort((short) 8).put((byte) 0).put((byte) 0x10).putInt(1 << 17);
+		entry.putInt(0x7f020000 | entryIndex).putShort((short) 8).put((byte) 0).put((byte) 0x11).putInt(1 << (entryIndex % 31));
+		return entry.array();
+	}
+
+	@Nonnull
+	private static byte[] config(int density, int sdkVersion) {
+		ByteBuffer config = ByteBuffer.allocate(CONFIG_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		config.putInt(CONFIG_SIZE);
+		config.putShort(14, (short) density);
+		config.putShort(24, (short) sdkVersion);
+		return config.array();
+	}
+
+	@Nonnull
+	private static byte[] stringPool(@Nonnull List<String> strings, boolean utf8) {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int[] offsets = new int[strings.size()];
+		for (int i = 0; i < strings.size(); i++) {
+			offsets[i] = data.size();
+			String string = strings.get(i);
+			if (utf8) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				writeUtf8Length(data, string.length());
+				writeUtf8Length(data, bytes.length);
+				data.write(bytes, 0, bytes.length);
+				data.write(0);
+			} else {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_16LE);
+				data.write(string.length() & 0xFF);
+				data.write(string.length() >> 8);
+				data.write(bytes, 0, bytes.length);
+				data.write(0);
+				data.write(0);
+			}
+		}
+		while (data.size() % 4 != 0)
+			data.write(0);
+
+		int stringsStart = STRING_POOL_HEADER_SIZE + offsets.length * 4;
+		ByteBuffer pool = ByteBuffer.allocate(stringsStart + data.size()).order(ByteOrder.LITTLE_ENDIAN);
+		pool.putShort((short) 0x0001).putShort((short) STRING_POOL_HEADER_SIZE).putInt(pool.capacity());
+		pool.putInt(strings.size()).putInt(0).putInt(utf8 ? UTF8_FLAG : 0).putInt(stringsStart).putInt(0);
+		for (int offset : offsets)
+			pool.putInt(offset);
+		pool.put(data.toByteArray());
+		return pool.array();
+	}
+
+	private static void writeUtf8Length(@Nonnull ByteArrayOutputStream out, int length) {
+		if (length > 0x7F)
+			out.write(((length >> 8) & 0x7F) | 0x80);
+		out.write(length & 0xFF);
+	}
+}
@@ -0,0 +1,46 @@
+package software.coley.androidres.benchmark;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.coley.android.xml.XmlDecoder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures decoding of already parsed binary XML samples back into text.
+ * Resource lookups are stubbed out, see {@link Samples#EMPTY_PROVIDER}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlDecodeBenchmark {
+	private List<BinaryResourceFile> files;
+
+	@Setup
+	public void setup() {
+		files = Samples.loadXmlSamples().stream()
+				.map(BinaryResourceFile::new)
+				.collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public void decode(Blackhole blackhole) {
+		for (BinaryResourceFile file : files)
+			blackhole.consume(XmlDecoder.decode(file, Samples.EMPTY_PROVIDER, null));
+	}
+}
@@ -15,11 +15,17 @@
  */
 package com.android.xml;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import javax.annotation.Nonnull;
 
 /**
  * Builds XML strings. Arguments are not validated or escaped. This class is designed to replace
  * hand writing XML snippets in string literals.
+ *
+ * <p>Output can also be streamed to an {@link Appendable}. Since the builder may still rewrite the
+ * trailing newline of what it has written, that newline is held back until more output follows
+ * or {@link #flush()} is called.
  */
 public final class XmlBuilder {
     public static final String ATTR_LAYOUT_HEIGHT = "layout_height";
@@ -36,27 +42,59 @@ public final class XmlBuilder {
         END_TAG
     }
 
-    private final StringBuilder stringBuilder = new StringBuilder();
+    private Appendable out;
 
     private Construct lastAppendedConstruct = Construct.NULL;
     private int indentationLevel;
+    private boolean pendingNewline;
+
+    public XmlBuilder() {
+        this(new StringBuilder());
+    }
+
+    /**
+     * Creates a builder that streams its output to {@code out}. Failures writing to {@code out}
+     * are rethrown as {@link UncheckedIOException}.
+     */
+    public XmlBuilder(@Nonnull Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Discards the state of the document being built, so the builder can be reused for another
+     * document. Output that is still held back is discarded, call {@link #flush()} first to keep
+     * it.
+     */
+    public void reset() {
+        lastAppendedConstruct = Construct.NULL;
+        indentationLevel = 0;
+        pendingNewline = false;
+    }
+
+    /**
+     * Discards the state of the document being built, like {@link #reset()}, and streams the output
+     * of the next document to {@code out}.
+     */
+    public void reset(@Nonnull Appendable out) {
+        reset();
+        this.out = out;
+    }
 
     @Nonnull
     public XmlBuilder startTag(@Nonnull String name) {
-        if (!lastAppendedConstruct.equals(Construct.END_TAG)) {
-            int length = stringBuilder.length();
-            if (length > 0) {
-                stringBuilder.replace(length - 1, length, ">\n");
-            }
+        if (!lastAppendedConstruct.equals(Construct.END_TAG) && pendingNewline) {
+            replaceNewline(">\n");
         }
 
         if (indentationLevel != 0) {
-            stringBuilder.append('\n');
+            write("\n");
         }
 
         indent();
 
-        stringBuilder.append('<').append(name).append('\n');
+        write("<");
+        write(name);
+        write("\n");
 
         indentationLevel++;
         lastAppendedConstruct = Construct.START_TAG;
@@ -90,10 +128,14 @@ public final class XmlBuilder {
         indent();
 
         if (!namespacePrefix.isEmpty()) {
-            stringBuilder.append(namespacePrefix).append(':');
+            write(namespacePrefix);
+            write(":");
         }
 
-        stringBuilder.append(name).append("=\"").append(value).append("\"\n");
+        write(name);
+        write("=\"");
+        write(value);
+        write("\"\n");
 
         lastAppendedConstruct = Construct.ATTRIBUTE;
         return this;
@@ -120,13 +162,13 @@ public final class XmlBuilder {
     public XmlBuilder characterData(@Nonnull String data) {
         if (lastAppendedConstruct.equals(Construct.START_TAG)
                 || lastAppendedConstruct.equals(Construct.ATTRIBUTE)) {
-            int length = stringBuilder.length();
-            stringBuilder.replace(length - 1, length, ">\n");
+            replaceNewline(">\n");
         }
 
         indent();
 
-        stringBuilder.append(data).append('\n');
+        write(data);
+        write("\n");
 
         lastAppendedConstruct = Construct.CHARACTER_DATA;
         return this;
@@ -146,12 +188,10 @@ public final class XmlBuilder {
     private XmlBuilder endTagImpl(@Nonnull String name, boolean useEmptyElementTag) {
         if (lastAppendedConstruct.equals(Construct.START_TAG)
                 || lastAppendedConstruct.equals(Construct.ATTRIBUTE)) {
-            int length = stringBuilder.length();
-
             if (useEmptyElementTag) {
-                stringBuilder.deleteCharAt(length - 1);
+                pendingNewline = false;
             } else {
-                stringBuilder.replace(length - 1, length, ">\n\n");
+                replaceNewline(">\n\n");
             }
         }
 
@@ -160,11 +200,13 @@ public final class XmlBuilder {
         if ((lastAppendedConstruct.equals(Construct.START_TAG)
                         || lastAppendedConstruct.equals(Construct.ATTRIBUTE))
                 && useEmptyElementTag) {
-            stringBuilder.append(" />\n");
+            write(" />\n");
         } else {
             indent();
 
-            stringBuilder.append("</").append(name).append(">\n");
+            write("</");
+            write(name);
+            write(">\n");
         }
 
         lastAppendedConstruct = Construct.END_TAG;
@@ -173,13 +215,55 @@ public final class XmlBuilder {
 
     private void indent() {
         for (int i = 0; i < indentationLevel; i++) {
-            stringBuilder.append("    ");
+            write("    ");
+        }
+    }
+
+    /** Replaces the trailing newline written so far with {@code value}. */
+    private void replaceNewline(@Nonnull String value) {
+        pendingNewline = false;
+        write(value);
+    }
+
+    /** Writes {@code value}, holding back its trailing newline so it can still be replaced. */
+    private void write(@Nonnull String value) {
+        try {
+            if (pendingNewline) {
+                out.append('\n');
+                pendingNewline = false;
+            }
+            int length = value.length();
+            if (length > 0 && value.charAt(length - 1) == '\n') {
+                out.append(value, 0, length - 1);
+                pendingNewline = true;
+            } else {
+                out.append(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes any output that is still held back. Call this once after the last construct has been
+     * appended, since the output can no longer be rewritten after this.
+     */
+    public void flush() {
+        if (pendingNewline) {
+            try {
+                out.append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pendingNewline = false;
         }
     }
 
+    /** Returns the output written so far, including any output that is still held back. */
     @Nonnull
     @Override
     public String toString() {
-        return stringBuilder.toString();
+        String result = out.toString();
+        return pendingNewline ? result + '\n' : result;
     }
 }
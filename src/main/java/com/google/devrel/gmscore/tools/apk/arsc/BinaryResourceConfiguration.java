@@ -22,6 +22,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.UnsignedBytes;
+import javax.annotation.Nullable;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -54,6 +55,10 @@ public class BinaryResourceConfiguration implements SerializableResource {
   private final int screenLayout2;
   private final byte[] unknown;
 
+  /** This configuration with its fields packed for matching. Created on first use. */
+  @Nullable
+  private Packed packed;
+
   static BinaryResourceConfiguration create(ByteBuffer buffer) {
     int startPosition = buffer.position();  // The starting buffer position to calculate bytes read.
     int size = buffer.getInt();
@@ -487,6 +492,39 @@ public class BinaryResourceConfiguration implements SerializableResource {
         && screenLayout2() == 0;
   }
 
+  /**
+   * Returns true if resources in this configuration can be used on a device with the given
+   * {@code settings}. This follows {@code ResTable_config::match} in the Android framework.
+   *
+   * @param settings The configuration of the device.
+   */
+  public final boolean match(BinaryResourceConfiguration settings) {
+    return packed().match(settings.packed());
+  }
+
+  /**
+   * Returns true if this configuration is a better match than {@code o} for a device with the
+   * {@code requested} configuration. Both configurations should {@link #match} {@code requested}.
+   * This follows {@code ResTable_config::isBetterThan} in the Android framework.
+   *
+   * @param o The configuration to compare against.
+   * @param requested The configuration of the device, or null to only compare how specific the
+   *     two configurations are.
+   */
+  public final boolean isBetterThan(
+      BinaryResourceConfiguration o, @Nullable BinaryResourceConfiguration requested) {
+    return packed().isBetterThan(o.packed(), requested != null ? requested.packed() : null);
+  }
+
+  /** Returns this configuration with its fields packed for matching. */
+  final Packed packed() {
+    Packed result = packed;
+    if (result == null) {
+      result = packed = new Packed(this);
+    }
+    return result;
+  }
+
   @Override
   public final byte[] toByteArray() {
     return toByteArray(false);
@@ -537,6 +575,11 @@ public class BinaryResourceConfiguration implements SerializableResource {
     return buffer.array();
   }
 
+  @Override
+  public final int serializedSize(boolean shrink) {
+    return size();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -626,6 +669,483 @@ public class BinaryResourceConfiguration implements SerializableResource {
     return result;
   }
 
+  /** Returns a new builder for a {@link BinaryResourceConfiguration}, e.g. of a device. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Builds a {@link BinaryResourceConfiguration}. Fields that are not set are left undefined. */
+  public static final class Builder {
+    private int mcc;
+    private int mnc;
+    private byte[] language = new byte[2];
+    private byte[] region = new byte[2];
+    private int orientation;
+    private int touchscreen;
+    private int density;
+    private int keyboard;
+    private int navigation;
+    private int inputFlags;
+    private int screenWidth;
+    private int screenHeight;
+    private int sdkVersion;
+    private int minorVersion;
+    private int screenLayout;
+    private int uiMode;
+    private int smallestScreenWidthDp;
+    private int screenWidthDp;
+    private int screenHeightDp;
+    private byte[] localeScript = new byte[4];
+    private byte[] localeVariant = new byte[8];
+    private int screenLayout2;
+
+    private Builder() {}
+
+    public Builder mcc(int mcc) { this.mcc = mcc; return this; }
+    public Builder mnc(int mnc) { this.mnc = mnc; return this; }
+
+    /** Sets the 2 or 3 letter language code, e.g. "en". */
+    public Builder language(String language) {
+      this.language = packLanguageOrRegion(language, 0x61);
+      return this;
+    }
+
+    /** Sets the 2 letter region code or 3 digit UN M.49 area code, e.g. "US". */
+    public Builder region(String region) {
+      this.region = packLanguageOrRegion(region, 0x30);
+      return this;
+    }
+
+    public Builder orientation(int orientation) { this.orientation = orientation; return this; }
+    public Builder touchscreen(int touchscreen) { this.touchscreen = touchscreen; return this; }
+    public Builder density(int density) { this.density = density; return this; }
+    public Builder keyboard(int keyboard) { this.keyboard = keyboard; return this; }
+    public Builder navigation(int navigation) { this.navigation = navigation; return this; }
+    public Builder inputFlags(int inputFlags) { this.inputFlags = inputFlags; return this; }
+    public Builder screenWidth(int screenWidth) { this.screenWidth = screenWidth; return this; }
+    public Builder screenHeight(int screenHeight) { this.screenHeight = screenHeight; return this; }
+    public Builder sdkVersion(int sdkVersion) { this.sdkVersion = sdkVersion; return this; }
+    public Builder minorVersion(int minorVersion) { this.minorVersion = minorVersion; return this; }
+    public Builder screenLayout(int screenLayout) { this.screenLayout = screenLayout; return this; }
+    public Builder uiMode(int uiMode) { this.uiMode = uiMode; return this; }
+
+    public Builder smallestScreenWidthDp(int smallestScreenWidthDp) {
+      this.smallestScreenWidthDp = smallestScreenWidthDp;
+      return this;
+    }
+
+    public Builder screenWidthDp(int screenWidthDp) {
+      this.screenWidthDp = screenWidthDp;
+      return this;
+    }
+
+    public Builder screenHeightDp(int screenHeightDp) {
+      this.screenHeightDp = screenHeightDp;
+      return this;
+    }
+
+    /** Sets the ISO-15924 short name for the script, e.g. "Latn". */
+    public Builder localeScript(String localeScript) {
+      this.localeScript = Arrays.copyOf(localeScript.getBytes(US_ASCII), 4);
+      return this;
+    }
+
+    /** Sets a single BCP-47 variant subtag. */
+    public Builder localeVariant(String localeVariant) {
+      this.localeVariant = Arrays.copyOf(localeVariant.getBytes(US_ASCII), 8);
+      return this;
+    }
+
+    public Builder screenLayout2(int screenLayout2) {
+      this.screenLayout2 = screenLayout2;
+      return this;
+    }
+
+    public BinaryResourceConfiguration build() {
+      return new BinaryResourceConfiguration(SCREEN_CONFIG_EXTENSION_MIN_SIZE, mcc, mnc,
+          language.clone(), region.clone(), orientation, touchscreen, density, keyboard,
+          navigation, inputFlags, screenWidth, screenHeight, sdkVersion, minorVersion,
+          screenLayout, uiMode, smallestScreenWidthDp, screenWidthDp, screenHeightDp,
+          localeScript.clone(), localeVariant.clone(), screenLayout2, new byte[0]);
+    }
+
+    /** The inverse of {@link #unpackLanguageOrRegion}. */
+    private static byte[] packLanguageOrRegion(String value, int base) {
+      byte[] bytes = value.getBytes(US_ASCII);
+      Preconditions.checkArgument(bytes.length <= 3, "Language or region must be <= 3 letters.");
+      if (bytes.length < 3) {
+        return Arrays.copyOf(bytes, 2);
+      }
+      int first = bytes[0] - base;
+      int second = bytes[1] - base;
+      int third = bytes[2] - base;
+      return new byte[] {
+          (byte) (0x80 | (third << 2) | (second >>> 3)), (byte) (second << 5 | first)};
+    }
+  }
+
+  /**
+   * A {@link BinaryResourceConfiguration} with its fields packed into primitives the same way as
+   * the framework's {@code ResTable_config}, so that matching does not need to compare arrays.
+   */
+  static final class Packed {
+    private final int mcc;
+    private final int mnc;
+    private final int imsi;
+    private final int language;
+    private final int region;
+    private final int locale;
+    private final int script;
+    private final long variant;
+    private final int orientation;
+    private final int touchscreen;
+    private final int density;
+    private final int screenType;
+    private final int keyboard;
+    private final int navigation;
+    private final int inputFlags;
+    private final int input;
+    private final int screenWidth;
+    private final int screenHeight;
+    private final int screenSize;
+    private final int sdkVersion;
+    private final int minorVersion;
+    private final int version;
+    private final int screenLayout;
+    private final int uiMode;
+    private final int smallestScreenWidthDp;
+    private final int screenConfig;
+    private final int screenWidthDp;
+    private final int screenHeightDp;
+    private final int screenSizeDp;
+    private final int screenLayout2;
+
+    private Packed(BinaryResourceConfiguration config) {
+      mcc = config.mcc();
+      mnc = config.mnc();
+      imsi = mcc << 16 | mnc;
+      language = (int) pack(config.language());
+      region = (int) pack(config.region());
+      locale = language << 16 | region;
+      script = (int) pack(config.localeScript());
+      variant = pack(config.localeVariant());
+      orientation = config.orientation();
+      touchscreen = config.touchscreen();
+      density = config.density();
+      screenType = orientation << 24 | touchscreen << 16 | density;
+      keyboard = config.keyboard();
+      navigation = config.navigation();
+      inputFlags = config.inputFlags();
+      input = keyboard << 24 | navigation << 16 | inputFlags << 8;
+      screenWidth = config.screenWidth();
+      screenHeight = config.screenHeight();
+      screenSize = screenWidth << 16 | screenHeight;
+      sdkVersion = config.sdkVersion();
+      minorVersion = config.minorVersion();
+      version = sdkVersion << 16 | minorVersion;
+      screenLayout = config.screenLayout();
+      uiMode = config.uiMode();
+      smallestScreenWidthDp = config.smallestScreenWidthDp();
+      screenConfig = screenLayout << 24 | uiMode << 16 | smallestScreenWidthDp;
+      screenWidthDp = config.screenWidthDp();
+      screenHeightDp = config.screenHeightDp();
+      screenSizeDp = screenWidthDp << 16 | screenHeightDp;
+      screenLayout2 = config.screenLayout2();
+    }
+
+    /** Packs up to 8 bytes into a long, most significant byte first. */
+    private static long pack(byte[] value) {
+      long result = 0;
+      for (int i = 0; i < value.length && i < 8; ++i) {
+        result = result << 8 | (value[i] & 0xFF);
+      }
+      return result;
+    }
+
+    /** See {@link BinaryResourceConfiguration#match}. */
+    boolean match(Packed settings) {
+      if (imsi != 0) {
+        if (mcc != 0 && mcc != settings.mcc) return false;
+        if (mnc != 0 && mnc != settings.mnc) return false;
+      }
+      if (locale != 0) {
+        // Don't consider the variant when deciding matches.
+        if (language != 0 && language != settings.language) return false;
+        if (region != 0 && region != settings.region) return false;
+        if (script != 0 && settings.script != 0 && script != settings.script) return false;
+      }
+      if (screenConfig != 0) {
+        int layoutDir = screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK;
+        if (layoutDir != 0 && layoutDir != (settings.screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK)) {
+          return false;
+        }
+        // Any screen sizes for larger screens than the setting do not match.
+        int screenLayoutSize = screenLayout & SCREENLAYOUT_SIZE_MASK;
+        if (screenLayoutSize != 0
+            && screenLayoutSize > (settings.screenLayout & SCREENLAYOUT_SIZE_MASK)) {
+          return false;
+        }
+        int screenLong = screenLayout & SCREENLAYOUT_LONG_MASK;
+        if (screenLong != 0 && screenLong != (settings.screenLayout & SCREENLAYOUT_LONG_MASK)) {
+          return false;
+        }
+        int uiModeType = uiMode & UI_MODE_TYPE_MASK;
+        if (uiModeType != 0 && uiModeType != (settings.uiMode & UI_MODE_TYPE_MASK)) return false;
+        int uiModeNight = uiMode & UI_MODE_NIGHT_MASK;
+        if (uiModeNight != 0 && uiModeNight != (settings.uiMode & UI_MODE_NIGHT_MASK)) return false;
+        if (smallestScreenWidthDp != 0
+            && smallestScreenWidthDp > settings.smallestScreenWidthDp) {
+          return false;
+        }
+      }
+      int screenRound = screenLayout2 & SCREENLAYOUT_ROUND_MASK;
+      if (screenRound != 0 && screenRound != (settings.screenLayout2 & SCREENLAYOUT_ROUND_MASK)) {
+        return false;
+      }
+      if (screenSizeDp != 0) {
+        if (screenWidthDp != 0 && screenWidthDp > settings.screenWidthDp) return false;
+        if (screenHeightDp != 0 && screenHeightDp > settings.screenHeightDp) return false;
+      }
+      if (screenType != 0) {
+        if (orientation != 0 && orientation != settings.orientation) return false;
+        // Density always matches, since it can be scaled. See #isBetterThan.
+        if (touchscreen != 0 && touchscreen != settings.touchscreen) return false;
+      }
+      if (input != 0) {
+        int keysHidden = inputFlags & KEYBOARDHIDDEN_MASK;
+        int settingsKeysHidden = settings.inputFlags & KEYBOARDHIDDEN_MASK;
+        // A request for KEYSHIDDEN_NO also matches the more recent KEYSHIDDEN_SOFT.
+        if (keysHidden != 0 && keysHidden != settingsKeysHidden
+            && (keysHidden != KEYBOARDHIDDEN_NO || settingsKeysHidden != KEYBOARDHIDDEN_SOFT)) {
+          return false;
+        }
+        int navHidden = inputFlags & NAVIGATIONHIDDEN_MASK;
+        if (navHidden != 0 && navHidden != (settings.inputFlags & NAVIGATIONHIDDEN_MASK)) {
+          return false;
+        }
+        if (keyboard != 0 && keyboard != settings.keyboard) return false;
+        if (navigation != 0 && navigation != settings.navigation) return false;
+      }
+      if (screenSize != 0) {
+        if (screenWidth != 0 && screenWidth > settings.screenWidth) return false;
+        if (screenHeight != 0 && screenHeight > settings.screenHeight) return false;
+      }
+      if (version != 0) {
+        if (sdkVersion != 0 && sdkVersion > settings.sdkVersion) return false;
+        if (minorVersion != 0 && minorVersion != settings.minorVersion) return false;
+      }
+      return true;
+    }
+
+    /** See {@link BinaryResourceConfiguration#isBetterThan}. */
+    boolean isBetterThan(Packed o, @Nullable Packed requested) {
+      if (requested == null) {
+        return isMoreSpecificThan(o);
+      }
+      if (imsi != 0 || o.imsi != 0) {
+        if (mcc != o.mcc && requested.mcc != 0) return mcc != 0;
+        if (mnc != o.mnc && requested.mnc != 0) return mnc != 0;
+      }
+      if (isLocaleBetterThan(o, requested)) return true;
+      if (o.isLocaleBetterThan(this, requested)) return false;
+      if (screenLayout != 0 || o.screenLayout != 0) {
+        if (((screenLayout ^ o.screenLayout) & SCREENLAYOUT_LAYOUTDIR_MASK) != 0
+            && (requested.screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK) != 0) {
+          return (screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK)
+              > (o.screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK);
+        }
+      }
+      if (smallestScreenWidthDp != o.smallestScreenWidthDp) {
+        return smallestScreenWidthDp > o.smallestScreenWidthDp;
+      }
+      if (screenSizeDp != 0 || o.screenSizeDp != 0) {
+        int delta = 0;
+        int otherDelta = 0;
+        if (requested.screenWidthDp != 0) {
+          delta += requested.screenWidthDp - screenWidthDp;
+          otherDelta += requested.screenWidthDp - o.screenWidthDp;
+        }
+        if (requested.screenHeightDp != 0) {
+          delta += requested.screenHeightDp - screenHeightDp;
+          otherDelta += requested.screenHeightDp - o.screenHeightDp;
+        }
+        if (delta != otherDelta) return delta < otherDelta;
+      }
+      if (screenLayout != 0 || o.screenLayout != 0) {
+        int requestedSize = requested.screenLayout & SCREENLAYOUT_SIZE_MASK;
+        if (((screenLayout ^ o.screenLayout) & SCREENLAYOUT_SIZE_MASK) != 0 && requestedSize != 0) {
+          int size = screenLayout & SCREENLAYOUT_SIZE_MASK;
+          int otherSize = o.screenLayout & SCREENLAYOUT_SIZE_MASK;
+          // An undefined size is treated as normal when a normal or larger screen is requested.
+          int fixedSize = size == 0 && requestedSize >= SCREENLAYOUT_SIZE_NORMAL
+              ? SCREENLAYOUT_SIZE_NORMAL : size;
+          int fixedOtherSize = otherSize == 0 && requestedSize >= SCREENLAYOUT_SIZE_NORMAL
+              ? SCREENLAYOUT_SIZE_NORMAL : otherSize;
+          if (fixedSize == fixedOtherSize) return size != 0;
+          return fixedSize > fixedOtherSize;
+        }
+        if (((screenLayout ^ o.screenLayout) & SCREENLAYOUT_LONG_MASK) != 0
+            && (requested.screenLayout & SCREENLAYOUT_LONG_MASK) != 0) {
+          return (screenLayout & SCREENLAYOUT_LONG_MASK) != 0;
+        }
+      }
+      if (((screenLayout2 ^ o.screenLayout2) & SCREENLAYOUT_ROUND_MASK) != 0
+          && (requested.screenLayout2 & SCREENLAYOUT_ROUND_MASK) != 0) {
+        return (screenLayout2 & SCREENLAYOUT_ROUND_MASK) != 0;
+      }
+      if (orientation != o.orientation && requested.orientation != 0) return orientation != 0;
+      if (uiMode != 0 || o.uiMode != 0) {
+        if (((uiMode ^ o.uiMode) & UI_MODE_TYPE_MASK) != 0
+            && (requested.uiMode & UI_MODE_TYPE_MASK) != 0) {
+          return (uiMode & UI_MODE_TYPE_MASK) != 0;
+        }
+        if (((uiMode ^ o.uiMode) & UI_MODE_NIGHT_MASK) != 0
+            && (requested.uiMode & UI_MODE_NIGHT_MASK) != 0) {
+          return (uiMode & UI_MODE_NIGHT_MASK) != 0;
+        }
+      }
+      if (screenType != 0 || o.screenType != 0) {
+        if (density != o.density) {
+          return isDensityBetterThan(o, requested);
+        }
+        if (touchscreen != o.touchscreen && requested.touchscreen != 0) return touchscreen != 0;
+      }
+      if (input != 0 || o.input != 0) {
+        int keysHidden = inputFlags & KEYBOARDHIDDEN_MASK;
+        int otherKeysHidden = o.inputFlags & KEYBOARDHIDDEN_MASK;
+        int requestedKeysHidden = requested.inputFlags & KEYBOARDHIDDEN_MASK;
+        if (keysHidden != otherKeysHidden && requestedKeysHidden != 0) {
+          if (keysHidden == 0) return false;
+          if (otherKeysHidden == 0) return true;
+          // KEYSHIDDEN_NO and KEYSHIDDEN_SOFT both match, but an exact match is more specific.
+          if (requestedKeysHidden == keysHidden) return true;
+          if (requestedKeysHidden == otherKeysHidden) return false;
+        }
+        int navHidden = inputFlags & NAVIGATIONHIDDEN_MASK;
+        int otherNavHidden = o.inputFlags & NAVIGATIONHIDDEN_MASK;
+        if (navHidden != otherNavHidden && (requested.inputFlags & NAVIGATIONHIDDEN_MASK) != 0) {
+          if (navHidden == 0) return false;
+          if (otherNavHidden == 0) return true;
+        }
+        if (keyboard != o.keyboard && requested.keyboard != 0) return keyboard != 0;
+        if (navigation != o.navigation && requested.navigation != 0) return navigation != 0;
+      }
+      if (screenSize != 0 || o.screenSize != 0) {
+        int delta = 0;
+        int otherDelta = 0;
+        if (requested.screenWidth != 0) {
+          delta += requested.screenWidth - screenWidth;
+          otherDelta += requested.screenWidth - o.screenWidth;
+        }
+        if (requested.screenHeight != 0) {
+          delta += requested.screenHeight - screenHeight;
+          otherDelta += requested.screenHeight - o.screenHeight;
+        }
+        if (delta != otherDelta) return delta < otherDelta;
+      }
+      if (version != 0 || o.version != 0) {
+        if (sdkVersion != o.sdkVersion && requested.sdkVersion != 0) {
+          return sdkVersion > o.sdkVersion;
+        }
+        if (minorVersion != o.minorVersion && requested.minorVersion != 0) {
+          return minorVersion != 0;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns true if this locale is a better match for {@code requested}. Unlike the framework,
+     * this does not take parent locales (e.g. en-001 for en-GB) into account.
+     */
+    private boolean isLocaleBetterThan(Packed o, Packed requested) {
+      if (requested.locale == 0 || (locale == 0 && o.locale == 0)) return false;
+      if (language != o.language) return language != 0;
+      if (region != o.region) {
+        if (region == requested.region) return true;
+        if (o.region == requested.region) return false;
+        return region != 0;
+      }
+      if (script != o.script) {
+        if (script == requested.script) return true;
+        if (o.script == requested.script) return false;
+      }
+      return variant != o.variant && variant == requested.variant;
+    }
+
+    /** Returns true if this density is better for {@code requested}, preferring to scale down. */
+    private boolean isDensityBetterThan(Packed o, Packed requested) {
+      // The default density is medium.
+      int thisDensity = density != 0 ? density : DENSITY_DPI_MDPI;
+      int otherDensity = o.density != 0 ? o.density : DENSITY_DPI_MDPI;
+      // Any density is always preferred over scaling a density bucket.
+      if (thisDensity == DENSITY_DPI_ANY) return true;
+      if (otherDensity == DENSITY_DPI_ANY) return false;
+      int requestedDensity = requested.density;
+      if (requestedDensity == 0 || requestedDensity == DENSITY_DPI_ANY) {
+        requestedDensity = DENSITY_DPI_MDPI;
+      }
+      int high = Math.max(thisDensity, otherDensity);
+      int low = Math.min(thisDensity, otherDensity);
+      boolean isBigger = thisDensity >= otherDensity;
+      if (requestedDensity >= high) return isBigger;
+      if (low >= requestedDensity) return !isBigger;
+      // Scaling down is considered 2x better than scaling up.
+      if (((2 * low) - requestedDensity) * high > requestedDensity * requestedDensity) {
+        return !isBigger;
+      }
+      return isBigger;
+    }
+
+    /** Returns true if this configuration defines a more important field than {@code o}. */
+    private boolean isMoreSpecificThan(Packed o) {
+      // The order of the tests defines the importance of one field over another.
+      int result = compareSpecificity(mcc, o.mcc);
+      result = result != 0 ? result : compareSpecificity(mnc, o.mnc);
+      result = result != 0 ? result : compareSpecificity(language, o.language);
+      result = result != 0 ? result : compareSpecificity(region, o.region);
+      result = result != 0 ? result : compareSpecificity(script, o.script);
+      result = result != 0 ? result : Boolean.compare(variant != 0, o.variant != 0);
+      result = result != 0 ? result : compareSpecificity(
+          screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK, o.screenLayout & SCREENLAYOUT_LAYOUTDIR_MASK);
+      result = result != 0 ? result
+          : compareSpecificity(smallestScreenWidthDp, o.smallestScreenWidthDp);
+      result = result != 0 ? result : compareSpecificity(screenWidthDp, o.screenWidthDp);
+      result = result != 0 ? result : compareSpecificity(screenHeightDp, o.screenHeightDp);
+      result = result != 0 ? result : compareSpecificity(
+          screenLayout & SCREENLAYOUT_SIZE_MASK, o.screenLayout & SCREENLAYOUT_SIZE_MASK);
+      result = result != 0 ? result : compareSpecificity(
+          screenLayout & SCREENLAYOUT_LONG_MASK, o.screenLayout & SCREENLAYOUT_LONG_MASK);
+      result = result != 0 ? result : compareSpecificity(
+          screenLayout2 & SCREENLAYOUT_ROUND_MASK, o.screenLayout2 & SCREENLAYOUT_ROUND_MASK);
+      result = result != 0 ? result : compareSpecificity(orientation, o.orientation);
+      result = result != 0 ? result
+          : compareSpecificity(uiMode & UI_MODE_TYPE_MASK, o.uiMode & UI_MODE_TYPE_MASK);
+      result = result != 0 ? result
+          : compareSpecificity(uiMode & UI_MODE_NIGHT_MASK, o.uiMode & UI_MODE_NIGHT_MASK);
+      // Density is never more specific, since undefined is the same as medium.
+      result = result != 0 ? result : compareSpecificity(touchscreen, o.touchscreen);
+      result = result != 0 ? result : compareSpecificity(
+          inputFlags & KEYBOARDHIDDEN_MASK, o.inputFlags & KEYBOARDHIDDEN_MASK);
+      result = result != 0 ? result : compareSpecificity(
+          inputFlags & NAVIGATIONHIDDEN_MASK, o.inputFlags & NAVIGATIONHIDDEN_MASK);
+      result = result != 0 ? result : compareSpecificity(keyboard, o.keyboard);
+      result = result != 0 ? result : compareSpecificity(navigation, o.navigation);
+      result = result != 0 ? result : compareSpecificity(screenWidth, o.screenWidth);
+      result = result != 0 ? result : compareSpecificity(screenHeight, o.screenHeight);
+      result = result != 0 ? result : compareSpecificity(sdkVersion, o.sdkVersion);
+      result = result != 0 ? result : compareSpecificity(minorVersion, o.minorVersion);
+      return result > 0;
+    }
+
+    /** Returns 1 if only {@code value} is defined, -1 if only {@code other} is, else 0. */
+    private static int compareSpecificity(int value, int other) {
+      if (value == other) return 0;
+      if (value == 0) return -1;
+      return other == 0 ? 1 : 0;
+    }
+  }
+
   private <K, V> V getOrDefault(Map<K, V> map, K key, V defaultValue) {
     // TODO(acornwall): Remove this when Java 8's Map#getOrDefault is available.
     // Null is not returned, even if the map contains a key whose value is null. This is intended.
@@ -16,16 +16,21 @@
 
 package com.google.devrel.gmscore.tools.apk.arsc;
 
-import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /** Given an arsc file, maps the contents of the file. */
 public final class BinaryResourceFile implements SerializableResource {
@@ -33,10 +38,76 @@ public final class BinaryResourceFile implements SerializableResource {
   /** The chunks contained in this resource file. */
   private final List<Chunk> chunks = new ArrayList<>();
 
+  /** True once this resource file has been frozen. */
+  private boolean frozen;
+
   public BinaryResourceFile(byte[] buf) {
-    ByteBuffer buffer = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    this(buf, false);
+  }
+
+  /**
+   * Maps the contents of {@code buf}. In lazy mode only chunk headers are decoded up front, and
+   * chunk payloads such as string pools, type entries and XML attributes are decoded the first time
+   * they are accessed. {@code buf} must not be modified afterwards in lazy mode.
+   *
+   * @param buf The bytes of the resource file.
+   * @param lazy True if decoding of chunk payloads should be deferred until first access.
+   */
+  public BinaryResourceFile(byte[] buf, boolean lazy) {
+    this(ByteBuffer.wrap(buf), lazy);
+  }
+
+  /**
+   * Maps the contents of {@code buffer} from its current position to its limit. The buffer does not
+   * need to be backed by an array, so direct and memory-mapped buffers can be parsed without first
+   * copying them onto the heap. The position of {@code buffer} is not modified.
+   *
+   * @param buffer The buffer containing the resource file.
+   */
+  public BinaryResourceFile(ByteBuffer buffer) {
+    this(buffer, false);
+  }
+
+  /**
+   * Maps the contents of {@code buffer} from its current position to its limit, optionally
+   * deferring the decoding of chunk payloads until they are first accessed.
+   *
+   * @param buffer The buffer containing the resource file.
+   * @param lazy True if decoding of chunk payloads should be deferred until first access.
+   * @see #BinaryResourceFile(byte[], boolean)
+   */
+  public BinaryResourceFile(ByteBuffer buffer, boolean lazy) {
+    buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
     while (buffer.remaining() > 0) {
-      chunks.add(Chunk.newInstance(buffer));
+      chunks.add(Chunk.newInstance(buffer, lazy));
+    }
+  }
+
+  /**
+   * Maps the contents of {@code buf}, decoding chunk payloads concurrently on {@code executor}.
+   *
+   * @param buf The bytes of the resource file.
+   * @param executor The executor to decode payloads on.
+   * @see Chunk#newInstance(ByteBuffer, Executor)
+   */
+  public BinaryResourceFile(byte[] buf, Executor executor) {
+    this(ByteBuffer.wrap(buf), executor);
+  }
+
+  /**
+   * Maps the contents of {@code buffer} from its current position to its limit, decoding chunk
+   * payloads concurrently on {@code executor}. Headers are scanned sequentially, then independent
+   * payloads such as type chunks and string pools are decoded in parallel. This returns once all
+   * payloads have been decoded.
+   *
+   * @param buffer The buffer containing the resource file.
+   * @param executor The executor to decode payloads on.
+   * @see Chunk#newInstance(ByteBuffer, Executor)
+   */
+  public BinaryResourceFile(ByteBuffer buffer, Executor executor) {
+    buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.remaining() > 0) {
+      chunks.add(Chunk.newInstance(buffer, executor));
     }
   }
 
@@ -53,6 +124,86 @@ public final class BinaryResourceFile implements SerializableResource {
     return new BinaryResourceFile(buf);
   }
 
+  /**
+   * Memory-maps the file at {@code path} and returns a {@link BinaryResourceFile} representing its
+   * contents. The file is parsed directly from the read-only mapping rather than being read into a
+   * {@code byte[]} first.
+   *
+   * @param path The path of the file to map.
+   * @return BinaryResourceFile represented by the file at {@code path}.
+   * @throws IOException Thrown if the file could not be opened or mapped.
+   */
+  public static BinaryResourceFile open(Path path) throws IOException {
+    return open(path, false);
+  }
+
+  /**
+   * Memory-maps the file at {@code path} and returns a {@link BinaryResourceFile} representing its
+   * contents, optionally deferring the decoding of chunk payloads until they are first accessed.
+   *
+   * @param path The path of the file to map.
+   * @param lazy True if decoding of chunk payloads should be deferred until first access.
+   * @return BinaryResourceFile represented by the file at {@code path}.
+   * @throws IOException Thrown if the file could not be opened or mapped.
+   */
+  public static BinaryResourceFile open(Path path, boolean lazy) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return open(channel, lazy);
+    }
+  }
+
+  /**
+   * Memory-maps the entire contents of {@code channel} and returns a {@link BinaryResourceFile}
+   * representing them. The mapping remains valid after the channel is closed.
+   *
+   * @param channel The channel to map. It must be open for reading.
+   * @return BinaryResourceFile represented by the contents of {@code channel}.
+   * @throws IOException Thrown if the channel could not be mapped.
+   */
+  public static BinaryResourceFile open(FileChannel channel) throws IOException {
+    return open(channel, false);
+  }
+
+  /**
+   * Memory-maps the entire contents of {@code channel}, optionally deferring the decoding of chunk
+   * payloads until they are first accessed.
+   *
+   * @param channel The channel to map. It must be open for reading.
+   * @param lazy True if decoding of chunk payloads should be deferred until first access.
+   * @return BinaryResourceFile represented by the contents of {@code channel}.
+   * @throws IOException Thrown if the channel could not be mapped.
+   */
+  public static BinaryResourceFile open(FileChannel channel, boolean lazy) throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    return new BinaryResourceFile(buffer, lazy);
+  }
+
+  /**
+   * Finishes decoding every chunk in this file and prevents further modification. Afterwards the
+   * model cannot be modified, and reads from it are thread-safe and no longer move any buffer
+   * position, so a single frozen file can be shared by concurrent readers once it has been safely
+   * published, for example through a final field or a concurrent collection. Mutators such as
+   * {@link TypeChunk#overrideEntry} throw an {@link IllegalStateException} once frozen.
+   *
+   * <p>String pools of lazily parsed files keep decoding strings on demand, using absolute reads
+   * from the original buffer, which must not be modified. The strings they decode are cached, so
+   * reads still write to those caches, which tolerate concurrent readers.
+   *
+   * @return This resource file.
+   */
+  public BinaryResourceFile freeze() {
+    for (Chunk chunk : chunks) {
+      chunk.freeze();
+    }
+    frozen = true;
+    return this;
+  }
+
+  /** Returns true if {@link #freeze} has been called on this resource file. */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   /** Returns the chunks in this resource file. */
   public List<Chunk> getChunks() {
     return Collections.unmodifiableList(chunks);
@@ -65,10 +216,39 @@ public final class BinaryResourceFile implements SerializableResource {
 
   @Override
   public byte[] toByteArray(boolean shrink) throws IOException {
-    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    return write(shrink).toByteArray();
+  }
+
+  /**
+   * Writes the serialized form of this resource file to {@code channel}. The whole file is
+   * serialized into a single buffer first, without intermediate copies of nested chunks.
+   *
+   * @param channel The channel to write to.
+   * @param shrink True if the output should be optimized for size.
+   * @throws IOException Thrown if {@code channel} could not be written to.
+   */
+  public void writeTo(WritableByteChannel channel, boolean shrink) throws IOException {
+    write(shrink).writeTo(channel);
+  }
+
+  @Override
+  public int serializedSize(boolean shrink) {
+    int size = 0;
+    for (Chunk chunk : chunks) {
+      size += chunk.serializedSize(shrink);
+    }
+    return size;
+  }
+
+  private ChunkOutput write(boolean shrink) throws IOException {
+    long sizeHint = 0;
+    for (Chunk chunk : chunks) {
+      sizeHint += Math.max(0, chunk.getOriginalChunkSize());
+    }
+    ChunkOutput output = new ChunkOutput((int) Math.min(sizeHint, Integer.MAX_VALUE));
     for (Chunk chunk : chunks) {
-      output.write(chunk.toByteArray(shrink));
+      chunk.writeTo(output, shrink);
     }
-    return output.toByteArray();
+    return output;
   }
 }
@@ -96,7 +96,7 @@ public class BinaryResourceIdentifier {
 
   @Override
   public String toString() {
-    int v = packageId << PACKAGE_ID_SHIFT | typeId << TYPE_ID_SHIFT | entryId;
-    return String.format("0x%1$08x", v);
+    String hex = Integer.toHexString(id());
+    return "0x00000000".substring(0, 10 - hex.length()) + hex;
   }
 }
@@ -79,7 +79,7 @@ public final class BinaryResourceString {
     if (length <= 0)
       return "";
 
-    if ((offset + length) >= buffer.capacity()) {
+    if ((offset + length) >= buffer.limit()) {
       // If the UTF-16 string is invalid, reinterpret as a UTF-8.
       if (type == Type.UTF16) {
         return decodeString(buffer, offset, Type.UTF8);
@@ -89,7 +89,23 @@ public final class BinaryResourceString {
       return "";
     }
 
-    return new String(buffer.array(), offset, length, type.charset());
+    return decodeBytes(buffer, offset, length, type.charset());
+  }
+
+  /**
+   * Decodes {@code length} bytes starting at the absolute {@code offset} of {@code buffer}. Buffers
+   * that expose a backing array are decoded in place, while all others (e.g. memory-mapped buffers)
+   * are copied out without modifying the position of {@code buffer}.
+   */
+  static String decodeBytes(ByteBuffer buffer, int offset, int length, Charset charset) {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + offset, length, charset);
+    }
+    byte[] data = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(data);
+    return new String(data, charset);
   }
 
   /**
@@ -122,6 +138,56 @@ public final class BinaryResourceString {
     return output.toByteArray();
   }
 
+  /**
+   * Returns the number of bytes {@link #encodeString} returns for {@code str}, without encoding it.
+   *
+   * @param str The string to be encoded.
+   * @param type The encoding type that the {@link BinaryResourceString} should be encoded in.
+   * @return The length of the encoded string in bytes.
+   */
+  public static int encodedLength(String str, Type type) {
+    if (type == Type.UTF8) {
+      int byteCount = utf8Length(str);
+      return encodedLengthSize(str.length(), type) + encodedLengthSize(byteCount, type)
+          + byteCount + 1;
+    }
+    return encodedLengthSize(str.length(), type) + str.length() * 2 + 2;
+  }
+
+  /** Returns the number of UTF-8 bytes in {@code str}. Unpaired surrogates encode as '?'. */
+  private static int utf8Length(String str) {
+    int length = str.length();
+    int result = 0;
+    for (int i = 0; i < length; ++i) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        result += 1;
+      } else if (c < 0x800) {
+        result += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(str.charAt(i + 1))) {
+        result += 4;
+        ++i;
+      } else if (Character.isSurrogate(c)) {
+        result += 1;
+      } else {
+        result += 3;
+      }
+    }
+    return result;
+  }
+
+  /** Returns the number of bytes {@link #encodeLength} writes for {@code length}. */
+  private static int encodedLengthSize(int length, Type type) {
+    if (length < 0) {
+      return 1;
+    }
+    if (type == Type.UTF8) {
+      return length > 0x7F ? 2 : 1;
+    }
+    return length > 0x7FFF ? 4 : 2;
+  }
+
   private static void encodeLength(ByteArrayDataOutput output, int length, Type type) {
     if (length < 0) {
       output.write(0);
@@ -155,7 +221,7 @@ public final class BinaryResourceString {
 
   private static int decodeLengthUTF8(ByteBuffer buffer, int offset) {
     // Bounds check
-    if (offset >= buffer.capacity())
+    if (offset >= buffer.limit())
       return -1;
 
     // UTF-8 strings use a clever variant of the 7-bit integer for packing the string length.
@@ -170,7 +236,7 @@ public final class BinaryResourceString {
 
   private static int decodeLengthUTF16(ByteBuffer buffer, int offset) {
     // Bounds check
-    if (offset >= buffer.capacity())
+    if (offset >= buffer.limit())
       return -1;
 
     // UTF-16 strings use a clever variant of the 7-bit integer for packing the string length.
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.primitives.UnsignedBytes;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Map;
@@ -102,11 +103,69 @@ public class BinaryResourceValue implements SerializableResource {
   private final int data;
 
   public static BinaryResourceValue create(ByteBuffer buffer) {
-    int size = (buffer.getShort() & 0xFFFF);
-    buffer.get();  // Unused
-    Type type = Type.fromCode(buffer.get());
-    int data = buffer.getInt();
-    return new BinaryResourceValue(size, type, data);
+    BinaryResourceValue result = create(buffer, buffer.position());
+    buffer.position(buffer.position() + SIZE);
+    return result;
+  }
+
+  /**
+   * Creates a new {@link BinaryResourceValue} from the bytes at {@code offset}, without changing
+   * the position of {@code buffer}.
+   *
+   * @param buffer The buffer to read from.
+   * @param offset The absolute offset in {@code buffer} of the value.
+   */
+  public static BinaryResourceValue create(ByteBuffer buffer, int offset) {
+    return fromPacked(readPacked(buffer, offset));
+  }
+
+  /**
+   * Reads the value at {@code offset} into a single {@code long}, without allocating or changing
+   * the position of {@code buffer}. Use {@link #packedSize}, {@link #packedType} and
+   * {@link #packedData} to read the packed value.
+   *
+   * @param buffer The buffer to read from.
+   * @param offset The absolute offset in {@code buffer} of the value.
+   */
+  public static long readPacked(ByteBuffer buffer, int offset) {
+    int size = (buffer.getShort(offset) & 0xFFFF);
+    // The byte at offset + 2 is unused.
+    Type type = Type.fromCode(buffer.get(offset + 3));
+    int data = buffer.getInt(offset + 4);
+    return pack(size, type, data);
+  }
+
+  /** Returns a {@code long} holding the given value, as returned by {@link #readPacked}. */
+  public static long pack(int size, Type type, int data) {
+    return (size & 0xFFFFL) | (type.code() & 0xFFL) << 16 | (long) data << 32;
+  }
+
+  /** Returns the length in bytes of a packed value. */
+  public static int packedSize(long packed) {
+    return (int) (packed & 0xFFFF);
+  }
+
+  /** Returns the raw data type of a packed value. */
+  public static Type packedType(long packed) {
+    return Type.fromCode((byte) (packed >>> 16));
+  }
+
+  /** Returns the 4-byte data of a packed value. */
+  public static int packedData(long packed) {
+    return (int) (packed >>> 32);
+  }
+
+  /** Returns a {@link BinaryResourceValue} holding the same value as {@code packed}. */
+  public static BinaryResourceValue fromPacked(long packed) {
+    return new BinaryResourceValue(packedSize(packed), packedType(packed), packedData(packed));
+  }
+
+  /** Writes a packed value to {@code output} in its serialized form. */
+  static void writePacked(ChunkOutput output, long packed) throws IOException {
+    output.writeShort(packedSize(packed));
+    output.writeByte(0);  // Unused
+    output.writeByte(packedType(packed).code());
+    output.writeInt(packedData(packed));
   }
 
   private BinaryResourceValue(int size, Type type, int data) {
@@ -124,6 +183,9 @@ public class BinaryResourceValue implements SerializableResource {
   /** The actual 4-byte value; interpretation of the value depends on {@code dataType}. */
   public int data() { return data; }
 
+  /** This value packed into a single {@code long}, see {@link #pack}. */
+  public long packed() { return pack(size, type, data); }
+
   @Override
   public byte[] toByteArray() {
     return toByteArray(false);
@@ -139,6 +201,11 @@ public class BinaryResourceValue implements SerializableResource {
     return buffer.array();
   }
 
+  @Override
+  public int serializedSize(boolean shrink) {
+    return SIZE;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -19,17 +19,20 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
-import com.google.common.io.LittleEndianDataOutputStream;
 import com.google.common.primitives.Shorts;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /** Represents a generic chunk. */
 public abstract class Chunk implements SerializableResource {
@@ -102,6 +105,22 @@ public abstract class Chunk implements SerializableResource {
   /** Offset of this chunk from the start of the file. */
   protected final int offset;
 
+  /** True if this chunk, and the chunks it contains, postpone decoding payloads until accessed. */
+  private boolean lazy;
+
+  /**
+   * True if this chunk, and the chunks it contains, postpone {@link #init} so that it can run on
+   * first access or concurrently with the initialization of other chunks.
+   */
+  private boolean deferInit;
+
+  /** True once this chunk has been frozen, after which it can no longer be modified. */
+  private boolean frozen;
+
+  /** The buffer this chunk's payload will be decoded from, if decoding has been deferred. */
+  @Nullable
+  private volatile ByteBuffer deferredBuffer;
+
   protected Chunk(ByteBuffer buffer, @Nullable Chunk parent) {
     this.parent = parent;
     offset = buffer.position() - 2;
@@ -118,6 +137,58 @@ public abstract class Chunk implements SerializableResource {
    */
   protected void init(ByteBuffer buffer) {}
 
+  /**
+   * Returns true if {@link #init} may be postponed until the payload of this chunk is first
+   * accessed. Chunks that must be initialized to locate other chunks should not be deferred.
+   */
+  protected boolean canDeferInit() {
+    return false;
+  }
+
+  /**
+   * Finishes initialization of this chunk if it was deferred by a lazy or parallel parse. Accessors
+   * that depend on state set up by {@link #init} must call this before reading that state.
+   */
+  protected final void initDeferred() {
+    if (deferredBuffer != null) {
+      synchronized (this) {
+        ByteBuffer buffer = deferredBuffer;
+        if (buffer != null) {
+          init(buffer);
+          deferredBuffer = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Finishes initialization of this chunk and prevents further modification. Afterwards, reads
+   * from this chunk are thread-safe, so it can be shared between threads once published. Reads may
+   * still fill caches, such as the strings of lazily parsed string pools, which is done safely.
+   * Chunks that contain other chunks, or that create state on access, must override this to freeze
+   * that state as well.
+   */
+  protected void freeze() {
+    initDeferred();
+    frozen = true;
+  }
+
+  /** Returns true if this chunk has been frozen and can no longer be modified. */
+  public final boolean isFrozen() {
+    return frozen;
+  }
+
+  /** Mutators must call this before modifying a chunk, as frozen chunks cannot be modified. */
+  protected final void checkNotFrozen() {
+    Preconditions.checkState(!frozen, "%s is frozen and cannot be modified.",
+        getClass().getSimpleName());
+  }
+
+  /** Returns true if this chunk was parsed in lazy mode. */
+  protected final boolean isLazy() {
+    return lazy;
+  }
+
   /**
    * Returns the parent to this chunk, if any. A parent is a chunk whose payload contains this
    * chunk. If there's no parent, null is returned.
@@ -182,23 +253,38 @@ public abstract class Chunk implements SerializableResource {
    * Writes the chunk payload. The payload is data in a chunk which is not in
    * the first {@code headerSize} bytes of the chunk.
    *
-   * @param output The stream that the payload will be written to.
+   * @param output The output that the payload will be written to, directly after the header.
    * @param header The already-written header. This can be modified to fix payload offsets.
    * @param shrink True if this payload should be optimized for size.
    * @throws IOException Thrown if {@code output} could not be written to (out of memory).
    */
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {}
 
+  /**
+   * Returns the number of bytes {@link #writePayload} writes. Chunks that override
+   * {@link #writePayload} must override this to match.
+   *
+   * @param shrink True if the size of the payload optimized for size should be returned.
+   */
+  protected int getPayloadSize(boolean shrink) {
+    return 0;
+  }
+
+  /** Returns {@code length} rounded up to the next multiple of {@link #PAD_BOUNDARY}. */
+  protected static int padLength(int length) {
+    return (length + PAD_BOUNDARY - 1) / PAD_BOUNDARY * PAD_BOUNDARY;
+  }
+
   /**
    * Pads {@code output} until {@code currentLength} is on a 4-byte boundary.
    *
-   * @param output The {@link DataOutput} that will be padded.
+   * @param output The output that will be padded.
    * @param currentLength The current length, in bytes, of {@code output}
    * @return The new length of {@code output}
    * @throws IOException Thrown if {@code output} could not be written to.
    */
-  protected int writePad(DataOutput output, int currentLength) throws IOException {
+  protected int writePad(ChunkOutput output, int currentLength) throws IOException {
     while (currentLength % PAD_BOUNDARY != 0) {
       output.write(0);
       ++currentLength;
@@ -217,23 +303,37 @@ public abstract class Chunk implements SerializableResource {
    */
   @Override
   public final byte[] toByteArray(boolean shrink) throws IOException {
-    ByteBuffer header = ByteBuffer.allocate(getHeaderSize()).order(ByteOrder.LITTLE_ENDIAN);
-    writeHeader(header, 0);  // The chunk size isn't known yet. This will be filled in later.
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ChunkOutput output = new ChunkOutput(getOriginalChunkSize());
+    writeTo(output, shrink);
+    return output.toByteArray();
+  }
 
-    try (LittleEndianDataOutputStream payload = new LittleEndianDataOutputStream(baos)) {
-      writePayload(payload, header, shrink);
-    }
+  @Override
+  public final int serializedSize(boolean shrink) {
+    initDeferred();
+    return getHeaderSize() + getPayloadSize(shrink);
+  }
 
-    byte[] payloadBytes = baos.toByteArray();
-    int chunkSize = getHeaderSize() + payloadBytes.length;
+  /**
+   * Appends this chunk to {@code output}. The header is written first with a placeholder size,
+   * then the payload is written directly after it, and finally the header is patched in place.
+   *
+   * @param output The output to append this chunk to.
+   * @param shrink True if this chunk should be optimized for size.
+   * @return The number of bytes written.
+   * @throws IOException Thrown if {@code output} could not be written to.
+   */
+  public final int writeTo(ChunkOutput output, boolean shrink) throws IOException {
+    initDeferred();
+    int start = output.size();
+    ByteBuffer header = ByteBuffer.allocate(getHeaderSize()).order(ByteOrder.LITTLE_ENDIAN);
+    writeHeader(header, 0);  // The chunk size isn't known yet. This will be filled in later.
+    output.skip(getHeaderSize());
+    writePayload(output, header, shrink);
+    int chunkSize = output.size() - start;
     header.putInt(CHUNK_SIZE_OFFSET, chunkSize);
-
-    // Combine results
-    ByteBuffer result = ByteBuffer.allocate(chunkSize).order(ByteOrder.LITTLE_ENDIAN);
-    result.put(header.array());
-    result.put(payloadBytes);
-    return result.array();
+    output.put(start, header.array());
+    return chunkSize;
   }
 
   /**
@@ -243,35 +343,104 @@ public abstract class Chunk implements SerializableResource {
    * @return new chunk
    */
   public static Chunk newInstance(ByteBuffer buffer) {
-    return newInstance(buffer, null);
+    return newInstance(buffer, false);
   }
 
   /**
    * Creates a new chunk whose contents start at {@code buffer}'s current position.
    *
+   * <p>In lazy mode only chunk headers are decoded up front. The payloads of the chunk and of any
+   * chunks it contains are decoded the first time they are accessed, which requires {@code buffer}
+   * to remain unmodified for the lifetime of the chunk.
+   *
+   * @param buffer A buffer positioned at the start of a chunk.
+   * @param lazy True if decoding of chunk payloads should be deferred until first access.
+   * @return new chunk
+   */
+  public static Chunk newInstance(ByteBuffer buffer, boolean lazy) {
+    return newInstance(buffer, null, lazy, lazy);
+  }
+
+  /**
+   * Creates a new chunk whose contents start at {@code buffer}'s current position, decoding
+   * payloads concurrently on {@code executor}.
+   *
+   * <p>Chunk headers are scanned first, which only decodes the payloads of chunks that contain
+   * other chunks. The remaining payloads, such as those of string pools and type chunks, are then
+   * decoded in parallel from independent views of {@code buffer}. This returns once every payload
+   * has been decoded, so the result is equivalent to an eagerly parsed chunk.
+   *
+   * @param buffer A buffer positioned at the start of a chunk.
+   * @param executor The executor to decode payloads on, such as
+   *     {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+   * @return new chunk
+   */
+  public static Chunk newInstance(ByteBuffer buffer, Executor executor) {
+    Chunk chunk = newInstance(buffer, null, false, true);
+    List<Chunk> pending = new ArrayList<>();
+    collectDeferred(chunk, pending);
+    CompletableFuture<?>[] tasks = new CompletableFuture<?>[pending.size()];
+    for (int i = 0; i < tasks.length; ++i) {
+      tasks[i] = CompletableFuture.runAsync(pending.get(i)::initDeferred, executor);
+    }
+    try {
+      CompletableFuture.allOf(tasks).join();
+    } catch (CompletionException e) {
+      // Surface the same exception a sequential parse would have thrown.
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+    return chunk;
+  }
+
+  private static void collectDeferred(Chunk chunk, List<Chunk> pending) {
+    if (chunk.deferredBuffer != null) {
+      pending.add(chunk);
+    }
+    if (chunk instanceof ChunkWithChunks) {
+      for (Chunk child : ((ChunkWithChunks) chunk).getChunks().values()) {
+        collectDeferred(child, pending);
+      }
+    }
+  }
+
+  /**
+   * Creates a new chunk whose contents start at {@code buffer}'s current position. The chunk is
+   * parsed in the same mode as {@code parent}.
+   *
    * @param buffer A buffer positioned at the start of a chunk.
    * @param parent The parent to this chunk (or null if there's no parent).
    * @return new chunk
    */
   @Nonnull
   public static Chunk newInstance(ByteBuffer buffer, @Nullable Chunk parent) {
+    return newInstance(buffer, parent, parent != null && parent.lazy,
+        parent != null && parent.deferInit);
+  }
+
+  @Nonnull
+  private static Chunk newInstance(ByteBuffer buffer, @Nullable Chunk parent, boolean lazy,
+                                   boolean deferInit) {
     short typeCode = buffer.getShort();
-    buffer.mark();
+    // Not a mark, since parsing children of the chunk would replace it.
+    int start = buffer.position();
     if (typeCode == Type.NULL.code()) {
       // There are some obfuscated samples which rewrite the type-code of the XML chunk to be the null identifier.
       // We'll see if this is such a case and handle it with XML if possible.
+      // This is always parsed eagerly, as a payload that fails to decode is what rules it out.
       try {
-        return getChunk(buffer, parent, Type.XML.code());
+        return getChunk(buffer, parent, Type.XML.code(), false, false);
       } catch (Throwable t) {
         // Not a valid XML chunk, reset the buffer position and treat it as a null chunk.
-        buffer.reset();
+        buffer.position(start);
       }
     }
-    return getChunk(buffer, parent, typeCode);
+    return getChunk(buffer, parent, typeCode, lazy, deferInit);
   }
 
   @Nonnull
-  private static Chunk getChunk(ByteBuffer buffer, Chunk parent, short typeCode) {
+  private static Chunk getChunk(ByteBuffer buffer, Chunk parent, short typeCode, boolean lazy,
+                                boolean deferInit) {
     Chunk result;
     Type type = Type.fromCode(typeCode);
     switch (type) {
@@ -317,7 +486,14 @@ public abstract class Chunk implements SerializableResource {
       default:
         result = new UnknownChunk(buffer, parent);
     }
-    result.init(buffer);
+    result.lazy = lazy;
+    result.deferInit = deferInit;
+    if (deferInit && result.canDeferInit()) {
+      // Keep an independent view of the buffer, positioned where init would have started reading.
+      result.deferredBuffer = buffer.duplicate().order(buffer.order());
+    } else {
+      result.init(buffer);
+    }
     result.seekToEndOfChunk(buffer);
     return result;
   }
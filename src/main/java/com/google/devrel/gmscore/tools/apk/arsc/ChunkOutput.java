@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A growable, little-endian buffer that chunks are serialized into. Unlike a stream, bytes that
+ * have already been written can be overwritten, so sizes and offsets which are only known once a
+ * payload has been written are patched in place instead of staging the payload in a temporary
+ * buffer. A whole tree of chunks is written into a single {@link ChunkOutput} without copying.
+ *
+ * <p>This is not a {@link java.io.DataOutput}, since multi-byte values are written in little-endian
+ * order, and only the writes needed by chunks are provided.
+ */
+public final class ChunkOutput {
+
+  /** The largest initial capacity accepted, in case the size hint comes from a corrupt header. */
+  private static final int MAX_INITIAL_CAPACITY = 1 << 26;
+
+  private byte[] buffer;
+  private int size;
+
+  /** Creates an empty output with room for {@code initialCapacity} bytes before growing. */
+  public ChunkOutput(int initialCapacity) {
+    buffer = new byte[Math.max(0, Math.min(initialCapacity, MAX_INITIAL_CAPACITY))];
+  }
+
+  /** Returns the number of bytes written so far. This is the position of the next write. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Appends {@code count} zero bytes, reserving space that will be overwritten once its contents
+   * are known.
+   */
+  public void skip(int count) {
+    ensureCapacity(count);
+    Arrays.fill(buffer, size, size + count, (byte) 0);
+    size += count;
+  }
+
+  /** Overwrites the 4 bytes at {@code position} with {@code value}. */
+  public void putInt(int position, int value) {
+    checkWritten(position, 4);
+    buffer[position] = (byte) value;
+    buffer[position + 1] = (byte) (value >>> 8);
+    buffer[position + 2] = (byte) (value >>> 16);
+    buffer[position + 3] = (byte) (value >>> 24);
+  }
+
+  /** Overwrites the bytes starting at {@code position} with {@code bytes}. */
+  public void put(int position, byte[] bytes) {
+    checkWritten(position, bytes.length);
+    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+  }
+
+  /** Returns the bytes written so far. */
+  public byte[] toByteArray() {
+    return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Writes all bytes written so far to {@code channel}.
+   *
+   * @param channel The channel to write to.
+   * @throws IOException Thrown if {@code channel} could not be written to.
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, size);
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  /** Appends the low 8 bits of {@code b}. */
+  public void write(int b) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) b;
+  }
+
+  /** Appends {@code b}. */
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  /** Appends {@code len} bytes of {@code b}, starting at {@code off}. */
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, buffer, size, len);
+    size += len;
+  }
+
+  /** Appends the low 8 bits of {@code v}. */
+  public void writeByte(int v) {
+    write(v);
+  }
+
+  /** Appends the low 16 bits of {@code v} in little-endian order. */
+  public void writeShort(int v) {
+    ensureCapacity(2);
+    buffer[size++] = (byte) v;
+    buffer[size++] = (byte) (v >>> 8);
+  }
+
+  /** Appends {@code v} in little-endian order. */
+  public void writeInt(int v) {
+    ensureCapacity(4);
+    size += 4;
+    putInt(size - 4, v);
+  }
+
+  private void ensureCapacity(int extra) {
+    int required = size + extra;
+    if (required < 0) {
+      throw new OutOfMemoryError("Chunk output exceeds the maximum array size");
+    }
+    if (required > buffer.length) {
+      int newCapacity = Math.max(required, buffer.length + (buffer.length >> 1) + 16);
+      buffer = Arrays.copyOf(buffer, newCapacity < 0 ? required : newCapacity);
+    }
+  }
+
+  private void checkWritten(int position, int length) {
+    if (position < 0 || length < 0 || position > size - length) {
+      throw new IndexOutOfBoundsException(
+          String.format("Cannot overwrite %d bytes at %d, size is %d", length, position, size));
+    }
+  }
+}
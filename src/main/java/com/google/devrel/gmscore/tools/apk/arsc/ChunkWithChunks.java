@@ -17,9 +17,9 @@
 package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -28,6 +28,9 @@ public abstract class ChunkWithChunks extends Chunk {
 
   private final Map<Integer, Chunk> chunks = new LinkedHashMap<>();
 
+  /** The map returned by {@link #getChunks}, which is read-only once this chunk is frozen. */
+  private Map<Integer, Chunk> chunksView = chunks;
+
   protected ChunkWithChunks(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
   }
@@ -57,16 +60,32 @@ public abstract class ChunkWithChunks extends Chunk {
    * @return map of buffer offset -> chunk contained in this chunk.
    */
   public final Map<Integer, Chunk> getChunks() {
-    return chunks;
+    return chunksView;
+  }
+
+  @Override
+  protected void freeze() {
+    super.freeze();
+    for (Chunk chunk : chunks.values()) {
+      chunk.freeze();
+    }
+    chunksView = Collections.unmodifiableMap(chunks);
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     for (Chunk chunk : getChunks().values()) {
-      byte[] chunkBytes = chunk.toByteArray(shrink);
-      output.write(chunkBytes);
-      writePad(output, chunkBytes.length);
+      writePad(output, chunk.writeTo(output, shrink));
+    }
+  }
+
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    int size = 0;
+    for (Chunk chunk : getChunks().values()) {
+      size += padLength(chunk.serializedSize(shrink));
     }
+    return size;
   }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import javax.annotation.Nullable;
+
+/**
+ * Selects the {@link TypeChunk.Entry} that a device with a given configuration would use for each
+ * resource in a {@link ResourceTableChunk}, following the framework's {@code ResTable_config}
+ * matching rules. Type chunks whose configuration does not match the device are discarded up
+ * front, so resolving a resource only compares the remaining candidates.
+ */
+public final class ConfigurationResolver {
+
+  /** The configuration of the device resources are resolved for. */
+  private final BinaryResourceConfiguration.Packed target;
+
+  /** Matching type chunks indexed by package id, then (1-based) type id. */
+  private final TypeChunk[][][] typeChunks;
+
+  /** The configurations of {@code typeChunks}, in the same order. */
+  private final BinaryResourceConfiguration.Packed[][][] configurations =
+      new BinaryResourceConfiguration.Packed[256][][];
+
+  /** The best entry of every resource, or null if {@link #flatten} was not called. */
+  @Nullable
+  private volatile TypeChunk.Entry[][][] flattened;
+
+  /**
+   * Creates a new {@link ConfigurationResolver}. Changes to the types of {@code resourceTable}
+   * after this point are not reflected.
+   *
+   * @param resourceTable The resource table to resolve resources in.
+   * @param target The configuration of the device to resolve resources for.
+   */
+  public ConfigurationResolver(ResourceTableChunk resourceTable,
+                               BinaryResourceConfiguration target) {
+    BinaryResourceConfiguration.Packed packedTarget = target.packed();
+    this.target = packedTarget;
+    typeChunks = ResourceResolver.indexTypeChunks(resourceTable,
+        typeChunk -> typeChunk.getConfiguration().packed().match(packedTarget));
+    for (int packageId = 0; packageId < typeChunks.length; ++packageId) {
+      TypeChunk[][] packageTypes = typeChunks[packageId];
+      if (packageTypes == null) {
+        continue;
+      }
+      BinaryResourceConfiguration.Packed[][] packageConfigurations =
+          new BinaryResourceConfiguration.Packed[packageTypes.length][];
+      for (int i = 0; i < packageTypes.length; ++i) {
+        packageConfigurations[i] = new BinaryResourceConfiguration.Packed[packageTypes[i].length];
+        for (int j = 0; j < packageTypes[i].length; ++j) {
+          packageConfigurations[i][j] = packageTypes[i][j].getConfiguration().packed();
+        }
+      }
+      configurations[packageId] = packageConfigurations;
+    }
+  }
+
+  /**
+   * Returns the entry that the target device would use for the resource with the given id.
+   *
+   * @param resourceId The resource id of the form 0xpptteeee.
+   * @return The best matching entry, or null if no configuration of the resource matches.
+   */
+  @Nullable
+  public TypeChunk.Entry resolve(int resourceId) {
+    int packageId = resourceId >>> 24;
+    int typeId = (resourceId >>> 16) & 0xFF;
+    int entryId = resourceId & 0xFFFF;
+    TypeChunk.Entry[][][] flattened = this.flattened;
+    if (flattened != null) {
+      TypeChunk.Entry[][] packageEntries = flattened[packageId];
+      if (packageEntries == null || typeId >= packageEntries.length) {
+        return null;
+      }
+      TypeChunk.Entry[] entries = packageEntries[typeId];
+      return entryId < entries.length ? entries[entryId] : null;
+    }
+    TypeChunk[][] packageTypes = typeChunks[packageId];
+    if (packageTypes == null || typeId >= packageTypes.length) {
+      return null;
+    }
+    return findBest(packageTypes[typeId], configurations[packageId][typeId], entryId);
+  }
+
+  /**
+   * Resolves the best entry of every resource up front, after which {@link #resolve} is a plain
+   * array lookup. Entries later overridden in the table are not reflected once flattened.
+   *
+   * @return This resolver.
+   */
+  public ConfigurationResolver flatten() {
+    TypeChunk.Entry[][][] result = new TypeChunk.Entry[256][][];
+    for (int packageId = 0; packageId < typeChunks.length; ++packageId) {
+      TypeChunk[][] packageTypes = typeChunks[packageId];
+      if (packageTypes == null) {
+        continue;
+      }
+      result[packageId] = new TypeChunk.Entry[packageTypes.length][];
+      for (int typeId = 0; typeId < packageTypes.length; ++typeId) {
+        int entryCount = 0;
+        for (TypeChunk typeChunk : packageTypes[typeId]) {
+          entryCount = Math.max(entryCount, typeChunk.getTotalEntryCount());
+        }
+        TypeChunk.Entry[] entries = new TypeChunk.Entry[entryCount];
+        for (int entryId = 0; entryId < entryCount; ++entryId) {
+          entries[entryId] =
+              findBest(packageTypes[typeId], configurations[packageId][typeId], entryId);
+        }
+        result[packageId][typeId] = entries;
+      }
+    }
+    flattened = result;
+    return this;
+  }
+
+  @Nullable
+  private TypeChunk.Entry findBest(TypeChunk[] variants,
+                                   BinaryResourceConfiguration.Packed[] variantConfigurations,
+                                   int entryId) {
+    TypeChunk.Entry best = null;
+    BinaryResourceConfiguration.Packed bestConfiguration = null;
+    for (int i = 0; i < variants.length; ++i) {
+      TypeChunk.Entry entry = variants[i].getEntry(entryId);
+      if (entry != null && (best == null
+          || variantConfigurations[i].isBetterThan(bestConfiguration, target))) {
+        best = entry;
+        bestConfiguration = variantConfigurations[i];
+      }
+    }
+    return best;
+  }
+}
@@ -18,7 +18,6 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -44,6 +43,11 @@ public final class LibraryChunk extends Chunk {
     entryCount = buffer.getInt();
   }
 
+  @Override
+  protected boolean canDeferInit() {
+    return true;
+  }
+
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
@@ -74,13 +78,18 @@ public final class LibraryChunk extends Chunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     for (Entry entry : entries) {
       output.write(entry.toByteArray(shrink));
     }
   }
 
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    return entries.size() * Entry.SIZE;
+  }
+
   /** A shared library package-id to package name entry. */
   protected static class Entry implements SerializableResource {
 
@@ -120,6 +129,11 @@ public final class LibraryChunk extends Chunk {
       return buffer.array();
     }
 
+    @Override
+    public int serializedSize(boolean shrink) {
+      return SIZE;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
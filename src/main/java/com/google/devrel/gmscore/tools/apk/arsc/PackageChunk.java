@@ -20,12 +20,13 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 
 import javax.annotation.Nullable;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -62,9 +63,15 @@ public final class PackageChunk extends ChunkWithChunks {
   /** Contains a mapping of a type index to its {@link TypeSpecChunk}. */
   private final Map<Integer, TypeSpecChunk> typeSpecs = new HashMap<>();
 
+  /** The map read by {@link #getTypeSpecChunks}, which is read-only once this chunk is frozen. */
+  private Map<Integer, TypeSpecChunk> typeSpecsView = typeSpecs;
+
   /** Contains a mapping of a type index to all of the {@link TypeChunk} with that index. */
   private final Multimap<Integer, TypeChunk> types = ArrayListMultimap.create();
 
+  /** The multimap read by {@link #getTypeChunks}, which is read-only once this chunk is frozen. */
+  private Multimap<Integer, TypeChunk> typesView = types;
+
   /** May contain a library chunk for mapping dynamic references to resolved references. */
   private Optional<LibraryChunk> libraryChunk = Optional.absent();
 
@@ -102,6 +109,13 @@ public final class PackageChunk extends ChunkWithChunks {
     }
   }
 
+  @Override
+  protected void freeze() {
+    super.freeze();
+    typeSpecsView = Collections.unmodifiableMap(typeSpecs);
+    typesView = Multimaps.unmodifiableMultimap(types);
+  }
+
   /** Returns the package id if this is a base package, or 0 if not a base package. */
   public int getId() {
     return id;
@@ -128,7 +142,7 @@ public final class PackageChunk extends ChunkWithChunks {
 
   /** Returns all {@link TypeChunk} in this package. */
   public Collection<TypeChunk> getTypeChunks() {
-    return types.values();
+    return typesView.values();
   }
 
   /**
@@ -139,7 +153,7 @@ public final class PackageChunk extends ChunkWithChunks {
    * @return The matching {@link TypeChunk} objects, or an empty collection if there are none.
    */
   public Collection<TypeChunk> getTypeChunks(int id) {
-    return types.get(id);
+    return typesView.get(id);
   }
 
   /**
@@ -156,7 +170,7 @@ public final class PackageChunk extends ChunkWithChunks {
 
   /** Returns all {@link TypeSpecChunk} in this package. */
   public Collection<TypeSpecChunk> getTypeSpecChunks() {
-    return typeSpecs.values();
+    return typeSpecsView.values();
   }
 
   /** For a given (1-based) type id, returns the {@link TypeSpecChunk} matching it. */
@@ -195,20 +209,19 @@ public final class PackageChunk extends ChunkWithChunks {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     int typeOffset = typeStringsOffset;
     int keyOffset = keyStringsOffset;
-    int payloadOffset = 0;
+    int payloadStart = output.size();
     for (Chunk chunk : getChunks().values()) {
+      int payloadOffset = output.size() - payloadStart;
       if (chunk == getTypeStringPool()) {
         typeOffset = payloadOffset + getHeaderSize();
       } else if (chunk == getKeyStringPool()) {
         keyOffset = payloadOffset + getHeaderSize();
       }
-      byte[] chunkBytes = chunk.toByteArray(shrink);
-      output.write(chunkBytes);
-      payloadOffset = writePad(output, chunkBytes.length);
+      writePad(output, chunk.writeTo(output, shrink));
     }
     header.putInt(TYPE_OFFSET_OFFSET, typeOffset);
     header.putInt(KEY_OFFSET_OFFSET, keyOffset);
@@ -16,8 +16,9 @@
 
 package com.google.devrel.gmscore.tools.apk.arsc;
 
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 
 /** Provides utility methods for package names. */
 public final class PackageUtils {
@@ -34,18 +35,17 @@ public final class PackageUtils {
    * @return The package name.
    */
   public static String readPackageName(ByteBuffer buffer, int offset) {
-    byte[] data = buffer.array();
     int length = 0;
+    int end = Math.min(buffer.limit(), PACKAGE_NAME_SIZE + offset);
     // Look for the null terminator for the string instead of using the entire buffer.
     // It's UTF-16 so check 2 bytes at a time to see if its double 0.
-    for (int i = offset; i < data.length && i < PACKAGE_NAME_SIZE + offset; i += 2) {
-      if (data[i] == 0 && data[i + 1] == 0) {
+    for (int i = offset; i + 1 < end; i += 2) {
+      if (buffer.get(i) == 0 && buffer.get(i + 1) == 0) {
         length = i - offset;
         break;
       }
     }
-    Charset utf16 = Charset.forName("UTF-16LE");
-    String str = new String(data, offset, length, utf16);
+    String str = BinaryResourceString.decodeBytes(buffer, offset, length, UTF_16LE);
     buffer.position(offset + PACKAGE_NAME_SIZE);
     return str;
   }
@@ -56,7 +56,7 @@ public final class PackageUtils {
    * @param packageName The package name that will be written to the buffer.
    */
   public static void writePackageName(ByteBuffer buffer, String packageName) {
-    byte[] nameBytes = packageName.getBytes(Charset.forName("UTF-16LE"));
+    byte[] nameBytes = packageName.getBytes(UTF_16LE);
     buffer.put(nameBytes, 0, Math.min(nameBytes.length, PACKAGE_NAME_SIZE));
     if (nameBytes.length < PACKAGE_NAME_SIZE) {
       // pad out the remaining space with an empty array.
@@ -83,11 +83,11 @@ public class ResourceEntryStatsCollector {
     return stats.containsKey(entry) ? stats.get(entry) : ResourceStatistics.EMPTY;
   }
 
-  private void computeStringPoolSizes() throws IOException {
+  private void computeStringPoolSizes() {
     computePoolSizes(resourceTable.getStringPool(), blamer.getStringToBlamedResources());
   }
 
-  private void computePackageSizes() throws IOException {
+  private void computePackageSizes() {
     computeTypePoolSizes();
     computeKeyPoolSizes();
     computeTypeSpecSizes();
@@ -95,14 +95,14 @@ public class ResourceEntryStatsCollector {
     computePackageChunkSizes();
   }
 
-  private void computeTypePoolSizes() throws IOException {
+  private void computeTypePoolSizes() {
     for (Entry<PackageChunk, List<ResourceEntry>[]> entry
         : blamer.getTypeToBlamedResources().entrySet()) {
       computePoolSizes(entry.getKey().getTypeStringPool(), entry.getValue());
     }
   }
 
-  private void computeKeyPoolSizes() throws IOException {
+  private void computeKeyPoolSizes() {
     for (Entry<PackageChunk, List<ResourceEntry>[]> entry
         : blamer.getKeyToBlamedResources().entrySet()) {
       computePoolSizes(entry.getKey().getKeyStringPool(), entry.getValue());
@@ -138,7 +138,7 @@ public class ResourceEntryStatsCollector {
   }
 
   private void computePoolSizes(StringPoolChunk stringPool,
-      List<ResourceEntry>[] usages) throws IOException {
+      List<ResourceEntry>[] usages) {
     int overhead = stringPool.getHeaderSize();
     if (stringPool.getStyleCount() > 0) {
       overhead += STYLE_OVERHEAD;
@@ -182,17 +182,15 @@ public class ResourceEntryStatsCollector {
    *
    * @param stringPool The string pool containing the {@code index}.
    * @param index The (0-based) index of the string and (optional) style.
-   * @throws IOException Thrown if the style's length could not be computed.
    */
-  private int computeStringAndStyleSize(StringPoolChunk stringPool, int index)
-      throws IOException {
+  private int computeStringAndStyleSize(StringPoolChunk stringPool, int index) {
     return computeStringSize(stringPool, index) + computeStyleSize(stringPool, index);
   }
 
   /** Given an {@code index} into a {@code stringPool}, return string's total size in bytes. */
   private int computeStringSize(StringPoolChunk stringPool, int index) {
     String string = stringPool.getString(index);
-    int result = BinaryResourceString.encodeString(string, stringPool.getStringType()).length;
+    int result = BinaryResourceString.encodedLength(string, stringPool.getStringType());
     result += OFFSET_SIZE;
     return result;
   }
@@ -200,14 +198,12 @@ public class ResourceEntryStatsCollector {
   /**
    * Given an {@code index} into a {@code stringPool}, return style's total size in bytes or 0 if
    * there's no style at that index.
-   *
-   * @throws IOException Thrown if the style's length could not be computed.
    */
-  private int computeStyleSize(StringPoolChunk stringPool, int index) throws IOException {
+  private int computeStyleSize(StringPoolChunk stringPool, int index) {
     if (index >= stringPool.getStyleCount()) {  // No style at index
       return 0;
     }
-    return stringPool.getStyle(index).toByteArray().length + OFFSET_SIZE;
+    return stringPool.getStyle(index).serializedSize(false) + OFFSET_SIZE;
   }
 
   /**
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Resolves packed resource ids of the form 0xpptteeee to the {@link TypeChunk.Entry} values in a
+ * {@link ResourceTableChunk}. The lookup tables are built once, after which every configuration
+ * variant of a resource can be found without walking the packages and type chunks of the table.
+ */
+public final class ResourceResolver {
+
+  private static final TypeChunk[] NO_TYPE_CHUNKS = new TypeChunk[0];
+
+  /** Type chunks indexed by package id, then (1-based) type id, then configuration. */
+  private final TypeChunk[][][] typeChunks;
+
+  /**
+   * Creates a new {@link ResourceResolver}. Changes to the types of {@code resourceTable} after
+   * this point are not reflected, though changes to their entries are.
+   *
+   * @param resourceTable The resource table to resolve resource ids against.
+   */
+  public ResourceResolver(ResourceTableChunk resourceTable) {
+    typeChunks = indexTypeChunks(resourceTable, typeChunk -> true);
+  }
+
+  /**
+   * Groups the type chunks of {@code resourceTable} the way packed resource ids address them.
+   * Packages with ids that cannot be referenced by a packed resource id are skipped.
+   *
+   * @param resourceTable The resource table to index.
+   * @param filter Whether to include a type chunk.
+   * @return The type chunks indexed by package id, then (1-based) type id, then in table order.
+   *     Packages without chunks are null, and types without chunks are empty.
+   */
+  static TypeChunk[][][] indexTypeChunks(
+      ResourceTableChunk resourceTable, Predicate<TypeChunk> filter) {
+    TypeChunk[][][] result = new TypeChunk[256][][];
+    for (PackageChunk packageChunk : resourceTable.getPackages()) {
+      int packageId = packageChunk.getId();
+      if ((packageId & 0xFF) != packageId) {
+        continue;  // Cannot be referenced by a packed resource id.
+      }
+      List<List<TypeChunk>> types = new ArrayList<>();
+      for (TypeChunk typeChunk : packageChunk.getTypeChunks()) {
+        int typeId = typeChunk.getId();
+        while (types.size() <= typeId) {
+          types.add(new ArrayList<>());
+        }
+        if (filter.test(typeChunk)) {
+          types.get(typeId).add(typeChunk);
+        }
+      }
+      TypeChunk[][] packageTypes = new TypeChunk[types.size()][];
+      for (int i = 0; i < packageTypes.length; ++i) {
+        List<TypeChunk> variants = types.get(i);
+        packageTypes[i] = variants.isEmpty() ? NO_TYPE_CHUNKS : variants.toArray(NO_TYPE_CHUNKS);
+      }
+      result[packageId] = packageTypes;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the maximum number of configuration variants of {@code resourceId}. This is the number
+   * of {@link TypeChunk} for its type, and can be used to size the array passed to
+   * {@link #resolve(int, TypeChunk.Entry[])}.
+   */
+  public int getVariantCount(int resourceId) {
+    return getTypeChunks(resourceId).length;
+  }
+
+  /**
+   * Returns every configuration variant of the resource with the given id. Use
+   * {@link TypeChunk.Entry#parent()} to get the configuration of each variant.
+   *
+   * @param resourceId The resource id of the form 0xpptteeee.
+   * @return The entries of the resource, or an empty list if the resource does not exist.
+   */
+  public List<TypeChunk.Entry> resolve(int resourceId) {
+    TypeChunk[] variants = getTypeChunks(resourceId);
+    if (variants.length == 0) {
+      return Collections.emptyList();
+    }
+    TypeChunk.Entry[] output = new TypeChunk.Entry[variants.length];
+    int count = resolve(resourceId, output);
+    return Collections.unmodifiableList(Arrays.asList(output).subList(0, count));
+  }
+
+  /**
+   * Fills {@code output} with every configuration variant of the resource with the given id,
+   * without allocating. Variants that do not fit in {@code output} are skipped.
+   *
+   * @param resourceId The resource id of the form 0xpptteeee.
+   * @param output The array to copy the entries of the resource into, starting at index 0.
+   * @return The number of entries copied into {@code output}.
+   */
+  public int resolve(int resourceId, TypeChunk.Entry[] output) {
+    int entryId = resourceId & 0xFFFF;
+    int count = 0;
+    for (TypeChunk typeChunk : getTypeChunks(resourceId)) {
+      if (count == output.length) {
+        break;
+      }
+      TypeChunk.Entry entry = typeChunk.getEntry(entryId);
+      if (entry != null) {
+        output[count++] = entry;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the entry of the resource with the given id in the given configuration variant.
+   *
+   * @param resourceId The resource id of the form 0xpptteeee.
+   * @param variant The 0-based index of the variant, less than {@link #getVariantCount(int)}.
+   * @return The entry, or null if the resource is not defined for the variant.
+   */
+  @Nullable
+  public TypeChunk.Entry resolve(int resourceId, int variant) {
+    TypeChunk[] variants = getTypeChunks(resourceId);
+    if (variant < 0 || variant >= variants.length) {
+      return null;
+    }
+    return variants[variant].getEntry(resourceId & 0xFFFF);
+  }
+
+  private TypeChunk[] getTypeChunks(int resourceId) {
+    TypeChunk[][] packageTypes = typeChunks[resourceId >>> 24];
+    int typeId = (resourceId >>> 16) & 0xFF;
+    if (packageTypes == null || typeId >= packageTypes.length) {
+      return NO_TYPE_CHUNKS;
+    }
+    return packageTypes[typeId];
+  }
+}
@@ -38,4 +38,12 @@ public interface SerializableResource {
    * @throws IOException
    */
   byte[] toByteArray(boolean shrink) throws IOException;
+
+  /**
+   * Returns the number of bytes {@link #toByteArray(boolean)} would return, without converting
+   * this resource into bytes.
+   * @param shrink True if the size of the representation optimized for size should be returned.
+   * @return The number of bytes in the array representation of this resource.
+   */
+  int serializedSize(boolean shrink);
 }
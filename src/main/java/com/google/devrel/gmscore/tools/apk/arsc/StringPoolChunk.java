@@ -22,11 +22,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.io.LittleEndianDataOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.function.IntFunction;
 
 /** Represents a string pool structure. */
 public final class StringPoolChunk extends Chunk {
@@ -38,6 +38,12 @@ public final class StringPoolChunk extends Chunk {
   /** The offset from the start of the header that the stylesStart field is at. */
   private static final int STYLE_START_OFFSET = 24;
 
+  /** The size of the two sentinel values following the styles. */
+  private static final int STYLES_END_SIZE = 8;
+
+  /** The maximum number of strings cached per pool when strings are decoded on demand. */
+  private static final int STRING_CACHE_SIZE = 256;
+
   /** Flags. */
   private final int flags;
 
@@ -65,6 +71,32 @@ public final class StringPoolChunk extends Chunk {
    */
   private final List<String> strings = new ArrayList<>();
 
+  /**
+   * The absolute buffer offset of each string. This is only set when the pool was parsed in lazy
+   * mode, in which case {@code strings} is left empty and strings are decoded on demand.
+   */
+  @Nullable
+  private int[] stringOffsets;
+
+  /** The buffer that strings are decoded from on demand, if {@code stringOffsets} is set. */
+  @Nullable
+  private ByteBuffer stringBuffer;
+
+  /**
+   * Recently decoded strings, indexed by the string index modulo the length of the array. Races
+   * between readers are benign, as entries are immutable and a lost entry is decoded again.
+   */
+  @Nullable
+  private CachedString[] stringCache;
+
+  /** Maps each string to the index of its first occurrence. Built on the first lookup. */
+  @Nullable
+  private volatile Map<String, Integer> stringIndex;
+
+  /** Whether the strings were checked to really be sorted, or null if not yet checked. */
+  @Nullable
+  private volatile Boolean verifiedSorted;
+
   /**
    * These styles have a 1:1 relationship with the strings. For example, styles.get(3) refers to
    * the string at location strings.get(3). There are never more styles than strings (though there
@@ -99,22 +131,91 @@ public final class StringPoolChunk extends Chunk {
     }
   }
 
+  @Override
+  protected boolean canDeferInit() {
+    return true;
+  }
+
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
-    strings.addAll(readStrings(buffer, offset + stringsStart, stringCount));
-    styles.addAll(readStyles(buffer, offset + stylesStart, styleCount));
+    // The string offsets directly follow the header, and are followed by the style offsets.
+    int offsetsStart = buffer.position();
+    if (isLazy()) {
+      // Only keep track of where the strings are. They are decoded when requested.
+      stringOffsets = readStringOffsets(buffer, offsetsStart, offset + stringsStart, stringCount);
+      stringBuffer = buffer;
+    } else {
+      strings.addAll(readStrings(buffer, offsetsStart, offset + stringsStart, stringCount));
+    }
+    styles.addAll(readStyles(
+        buffer, offsetsStart + stringCount * 4, offset + stylesStart, styleCount));
   }
 
   /**
    * Returns the 0-based index of the first occurrence of the given string, or -1 if the string is
-   * not in the pool. This runs in O(n) time.
+   * not in the pool. Sorted pools are binary searched, while all others build a hash index on
+   * the first call, after which lookups run in constant time.
    *
    * @param string The string to check the pool for.
    * @return Index of the string, or -1 if not found.
    */
   public int indexOf(String string) {
-    return strings.indexOf(string);
+    initDeferred();
+    if (isSorted() && isVerifiedSorted()) {
+      return binarySearch(string);
+    }
+    Map<String, Integer> index = stringIndex;
+    if (index == null) {
+      index = new HashMap<>();
+      for (int i = 0; i < getStringCount(); ++i) {
+        index.putIfAbsent(getString(i), i);
+      }
+      stringIndex = index;
+    }
+    Integer result = index.get(string);
+    return result != null ? result : -1;
+  }
+
+  /**
+   * Returns true if the strings are in ascending order. The sorted flag is only trusted after
+   * checking it once, since a pool with an incorrect flag would break {@link #binarySearch}.
+   */
+  private boolean isVerifiedSorted() {
+    Boolean result = verifiedSorted;
+    if (result == null) {
+      result = true;
+      for (int i = 1; i < getStringCount(); ++i) {
+        if (getString(i - 1).compareTo(getString(i)) > 0) {
+          result = false;
+          break;
+        }
+      }
+      verifiedSorted = result;
+    }
+    return result;
+  }
+
+  /** Returns the index of the first occurrence of {@code string} in this sorted pool, or -1. */
+  private int binarySearch(String string) {
+    int low = 0;
+    int high = getStringCount() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = getString(mid).compareTo(string);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        // Duplicates are adjacent in a sorted pool, so step back to the first one.
+        while (mid > 0 && getString(mid - 1).equals(string)) {
+          --mid;
+        }
+        return mid;
+      }
+    }
+    return -1;
   }
 
   /**
@@ -124,14 +225,36 @@ public final class StringPoolChunk extends Chunk {
    */
   @Nonnull
   public String getString(int index) {
-    if (index >= strings.size())
+    initDeferred();
+    if (index >= getStringCount())
       return "?";
+    if (stringOffsets != null)
+      return decodeString(index);
     return strings.get(index);
   }
 
   /** Returns the number of strings in this pool. */
   public int getStringCount() {
-    return strings.size();
+    initDeferred();
+    return stringOffsets != null ? stringOffsets.length : strings.size();
+  }
+
+  /** Decodes the string at {@code index} from {@code stringBuffer}, consulting the cache first. */
+  private String decodeString(int index) {
+    CachedString[] cache = stringCache;
+    if (cache == null) {
+      int size = Integer.highestOneBit(Math.max(stringOffsets.length, 1));
+      cache = stringCache = new CachedString[Math.min(STRING_CACHE_SIZE, size)];
+    }
+    int slot = index & (cache.length - 1);
+    CachedString cached = cache[slot];
+    if (cached != null && cached.index == index) {
+      return cached.value;
+    }
+    String value =
+        BinaryResourceString.decodeString(stringBuffer, stringOffsets[index], getStringType());
+    cache[slot] = new CachedString(index, value);
+    return value;
   }
 
   /**
@@ -140,6 +263,7 @@ public final class StringPoolChunk extends Chunk {
    * @param index The (0-based) index of the style to return.
    */
   public StringPoolStyle getStyle(int index) {
+    initDeferred();
     if (index >= styles.size())
       return new StringPoolStyle(Collections.emptyList());
     return styles.get(index);
@@ -147,6 +271,7 @@ public final class StringPoolChunk extends Chunk {
 
   /** Returns the number of styles in this pool. */
   public int getStyleCount() {
+    initDeferred();
     return styles.size();
   }
 
@@ -162,7 +287,7 @@ public final class StringPoolChunk extends Chunk {
 
   /** Returns the number of bytes needed for offsets based on {@code strings} and {@code styles}. */
   private int getOffsetSize() {
-    return (strings.size() + styles.size()) * 4;
+    return (getStringCount() + styles.size()) * 4;
   }
 
   /**
@@ -183,12 +308,12 @@ public final class StringPoolChunk extends Chunk {
     return (flags & SORTED_FLAG) != 0;
   }
 
-  private List<String> readStrings(ByteBuffer buffer, int offset, int count) {
+  private List<String> readStrings(ByteBuffer buffer, int offsetsStart, int offset, int count) {
     List<String> result = new ArrayList<>(count);
     int previousOffset = -1;
     // After the header, we now have an array of offsets for the strings in this pool.
     for (int i = 0; i < count; ++i) {
-      int stringOffset = offset + buffer.getInt();
+      int stringOffset = offset + buffer.getInt(offsetsStart + i * 4);
       result.add(BinaryResourceString.decodeString(buffer, stringOffset, getStringType()));
       if (stringOffset <= previousOffset) {
         isOriginalDeduped = true;
@@ -198,33 +323,69 @@ public final class StringPoolChunk extends Chunk {
     return result;
   }
 
-  private List<StringPoolStyle> readStyles(ByteBuffer buffer, int offset, int count) {
+  private int[] readStringOffsets(ByteBuffer buffer, int offsetsStart, int offset, int count) {
+    int[] result = new int[count];
+    int previousOffset = -1;
+    for (int i = 0; i < count; ++i) {
+      int stringOffset = offset + buffer.getInt(offsetsStart + i * 4);
+      result[i] = stringOffset;
+      if (stringOffset <= previousOffset) {
+        isOriginalDeduped = true;
+      }
+      previousOffset = stringOffset;
+    }
+    return result;
+  }
+
+  private List<StringPoolStyle> readStyles(ByteBuffer buffer, int offsetsStart, int offset,
+                                           int count) {
     List<StringPoolStyle> result = new ArrayList<>();
     // After the array of offsets for the strings in the pool, we have an offset for the styles
     // in this pool.
     for (int i = 0; i < count; ++i) {
-      int styleOffset = offset + buffer.getInt();
+      int styleOffset = offset + buffer.getInt(offsetsStart + i * 4);
       result.add(StringPoolStyle.create(buffer, styleOffset, this));
     }
     return result;
   }
 
-  private int writeStrings(DataOutput payload, ByteBuffer offsets, boolean shrink)
+  /**
+   * Returns, for each of the {@code count} values, the index of the value whose bytes it shares
+   * when written. Values which are written themselves map to their own index.
+   */
+  private static <T> int[] dedupe(int count, IntFunction<T> values, boolean dedupe) {
+    int[] result = new int[count];
+    Map<T, Integer> used = new HashMap<>();  // Keeps track of values already written
+    for (int i = 0; i < count; ++i) {
+      Integer usedIndex = dedupe ? used.putIfAbsent(values.apply(i), i) : null;
+      result[i] = usedIndex == null ? i : usedIndex;
+    }
+    return result;
+  }
+
+  /** Dedupe everything except stylized strings, unless shrink is true (then dedupe everything). */
+  private int[] dedupeStrings(boolean shrink) {
+    return dedupe(getStringCount(), this::getString, shrink || isOriginalDeduped);
+  }
+
+  /** Styles are only deduped when shrink is true. */
+  private int[] dedupeStyles(boolean shrink) {
+    return dedupe(styles.size(), styles::get, shrink);
+  }
+
+  private int writeStrings(ChunkOutput payload, ByteBuffer offsets, boolean shrink)
       throws IOException {
     int stringOffset = 0;
-    Map<String, Integer> used = new HashMap<>();  // Keeps track of strings already written
-    for (String string : strings) {
-      // Dedupe everything except stylized strings, unless shrink is true (then dedupe everything)
-      if (used.containsKey(string) && (shrink || isOriginalDeduped)) {
-        Integer offset = used.get(string);
-        offsets.putInt(offset == null ? 0 : offset);
-      } else {
-        byte[] encodedString = BinaryResourceString.encodeString(string, getStringType());
+    int[] writtenIndices = dedupeStrings(shrink);
+    int[] writtenOffsets = new int[writtenIndices.length];
+    for (int i = 0; i < writtenIndices.length; ++i) {
+      if (writtenIndices[i] == i) {
+        byte[] encodedString = BinaryResourceString.encodeString(getString(i), getStringType());
         payload.write(encodedString);
-        used.put(string, stringOffset);
-        offsets.putInt(stringOffset);
+        writtenOffsets[i] = stringOffset;
         stringOffset += encodedString.length;
       }
+      offsets.putInt(writtenOffsets[writtenIndices[i]]);
     }
 
     // ARSC files pad to a 4-byte boundary. We should do so too.
@@ -232,29 +393,26 @@ public final class StringPoolChunk extends Chunk {
     return stringOffset;
   }
 
-  private int writeStyles(DataOutput payload, ByteBuffer offsets, boolean shrink)
+  private int writeStyles(ChunkOutput payload, ByteBuffer offsets, boolean shrink)
       throws IOException {
     int styleOffset = 0;
-        if (!styles.isEmpty()) {
-      Map<StringPoolStyle, Integer> used = new HashMap<>();  // Keeps track of bytes already written
-      for (StringPoolStyle style : styles) {
-        if (!used.containsKey(style) || !shrink) {
-          byte[] encodedStyle = style.toByteArray(shrink);
+    if (!styles.isEmpty()) {
+      int[] writtenIndices = dedupeStyles(shrink);
+      int[] writtenOffsets = new int[writtenIndices.length];
+      for (int i = 0; i < writtenIndices.length; ++i) {
+        if (writtenIndices[i] == i) {
+          byte[] encodedStyle = styles.get(i).toByteArray(shrink);
           payload.write(encodedStyle);
-          used.put(style, styleOffset);
-          offsets.putInt(styleOffset);
+          writtenOffsets[i] = styleOffset;
           styleOffset += encodedStyle.length;
-        } else {  // contains key and shrink is true
-          Integer offset = used.get(style);
-          offsets.putInt(offset == null ? 0 : offset);
         }
+        offsets.putInt(writtenOffsets[writtenIndices[i]]);
       }
       // The end of the spans are terminated with another sentinel value
       payload.writeInt(StringPoolStyle.RES_STRING_POOL_SPAN_END);
-      styleOffset += 4;
       // TODO(acornwall): There appears to be an extra SPAN_END here... why?
       payload.writeInt(StringPoolStyle.RES_STRING_POOL_SPAN_END);
-      styleOffset += 4;
+      styleOffset += STYLES_END_SIZE;
 
       styleOffset = writePad(payload, styleOffset);
     }
@@ -264,32 +422,51 @@ public final class StringPoolChunk extends Chunk {
   @Override
   protected void writeHeader(ByteBuffer output) {
     int stringsStart = getHeaderSize() + getOffsetSize();
-    output.putInt(strings.size());
+    output.putInt(getStringCount());
     output.putInt(styles.size());
     output.putInt(flags);
-    output.putInt(strings.isEmpty() ? 0 : stringsStart);
+    output.putInt(getStringCount() == 0 ? 0 : stringsStart);
     output.putInt(0);  // Placeholder. The styles starting offset cannot be computed at this point.
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    int stringOffset = 0;
+    int offsetsStart = output.size();
     ByteBuffer offsets = ByteBuffer.allocate(getOffsetSize());
     offsets.order(ByteOrder.LITTLE_ENDIAN);
 
-    // Write to a temporary payload so we can rearrange this and put the offsets first
-    try (LittleEndianDataOutputStream payload = new LittleEndianDataOutputStream(baos)) {
-      stringOffset = writeStrings(payload, offsets, shrink);
-      writeStyles(payload, offsets, shrink);
+    // The offsets come first, but are only known once the strings and styles have been written
+    output.skip(getOffsetSize());
+    int stringOffset = writeStrings(output, offsets, shrink);
+    writeStyles(output, offsets, shrink);
+    output.put(offsetsStart, offsets.array());
+    if (!styles.isEmpty()) {
+      header.putInt(STYLE_START_OFFSET, getHeaderSize() + getOffsetSize() + stringOffset);
     }
+  }
 
-    output.write(offsets.array());
-    output.write(baos.toByteArray());
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    int stringsSize = 0;
+    int[] writtenStrings = dedupeStrings(shrink);
+    BinaryResourceString.Type stringType = getStringType();
+    for (int i = 0; i < writtenStrings.length; ++i) {
+      if (writtenStrings[i] == i) {
+        stringsSize += BinaryResourceString.encodedLength(getString(i), stringType);
+      }
+    }
+    int stylesSize = 0;
     if (!styles.isEmpty()) {
-      header.putInt(STYLE_START_OFFSET, getHeaderSize() + getOffsetSize() + stringOffset);
+      int[] writtenStyles = dedupeStyles(shrink);
+      for (int i = 0; i < writtenStyles.length; ++i) {
+        if (writtenStyles[i] == i) {
+          stylesSize += styles.get(i).serializedSize(shrink);
+        }
+      }
+      stylesSize = padLength(stylesSize + STYLES_END_SIZE);
     }
+    return getOffsetSize() + padLength(stringsSize) + stylesSize;
   }
 
   /**
@@ -340,6 +517,11 @@ public final class StringPoolChunk extends Chunk {
       return baos.toByteArray();
     }
 
+    @Override
+    public int serializedSize(boolean shrink) {
+      return spans.size() * StringPoolSpan.SPAN_LENGTH + 4;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
@@ -365,6 +547,17 @@ public final class StringPoolChunk extends Chunk {
     }
   }
 
+  /** A string decoded on demand, along with the index it was decoded from. */
+  private static final class CachedString {
+    private final int index;
+    private final String value;
+
+    private CachedString(int index, String value) {
+      this.index = index;
+      this.value = value;
+    }
+  }
+
   /** Represents a styled span associated with a specific string. */
   private static class StringPoolSpan implements SerializableResource {
     static final int SPAN_LENGTH = 12;
@@ -402,6 +595,11 @@ public final class StringPoolChunk extends Chunk {
       return buffer.array();
     }
 
+    @Override
+    public final int serializedSize(boolean shrink) {
+      return SPAN_LENGTH;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
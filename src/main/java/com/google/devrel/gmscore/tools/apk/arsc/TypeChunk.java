@@ -18,10 +18,7 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
 import com.google.common.base.Preconditions;
-import com.google.common.io.LittleEndianDataOutputStream;
 import com.google.common.primitives.UnsignedBytes;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -49,25 +46,66 @@ public final class TypeChunk extends Chunk {
   /** The resource configuration that these resource entries correspond to. */
   private BinaryResourceConfiguration configuration;
 
-  /** A sparse list of resource entries defined by this chunk. */
-  private final Map<Integer, Entry> entries = new TreeMap<>();
+  /** A dense array of resource entries defined by this chunk, indexed by entry id. */
+  private Entry[] entries = new Entry[0];
+
+  /**
+   * The absolute buffer offset of each entry, or {@link Entry#NO_ENTRY}. This is only set when the
+   * chunk was parsed in lazy mode, in which case entries are created when they are first requested.
+   */
+  @Nullable
+  private int[] entryOffsets;
+
+  /** The buffer that entries are created from on demand, if {@code entryOffsets} is set. */
+  @Nullable
+  private ByteBuffer entryBuffer;
+
+  /** The number of entries that are present. */
+  private int presentEntryCount;
 
   protected TypeChunk(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
     id = UnsignedBytes.toInt(buffer.get());
     buffer.position(buffer.position() + 3);  // Skip 3 bytes for packing
-    entryCount = buffer.getInt();
+    int declaredEntryCount = buffer.getInt();
     entriesStart = buffer.getInt();
+    // The 4 byte offset of each entry sits between the header and the entries, which bounds the
+    // count of tampered chunks before anything is allocated from it.
+    int offsetsEnd = Math.min(entriesStart, getOriginalChunkSize());
+    int maxEntryCount = Math.max(offsetsEnd - getHeaderSize(), 0) / 4;
+    entryCount = Math.min(Math.max(declaredEntryCount, 0), maxEntryCount);
     configuration = BinaryResourceConfiguration.create(buffer);
   }
 
+  @Override
+  protected boolean canDeferInit() {
+    return true;
+  }
+
   @Override
   protected void init(ByteBuffer buffer) {
     int offset = this.offset + entriesStart;
+    // The entry offsets directly follow the header.
+    int offsetsStart = buffer.position();
+    entries = new Entry[entryCount];
+    if (isLazy()) {
+      // Only keep track of where the entries are. They are created when requested.
+      entryOffsets = new int[entries.length];
+      for (int i = 0; i < entryCount; ++i) {
+        int entryOffset = buffer.getInt(offsetsStart + i * 4);
+        entryOffsets[i] = entryOffset == Entry.NO_ENTRY ? Entry.NO_ENTRY : offset + entryOffset;
+        if (entryOffset != Entry.NO_ENTRY) {
+          ++presentEntryCount;
+        }
+      }
+      entryBuffer = buffer;
+      return;
+    }
     for (int i = 0; i < entryCount; ++i) {
-      Entry entry = Entry.create(buffer, offset, this);
-      if (entry != null) {
-        entries.put(i, entry);
+      int entryOffset = buffer.getInt(offsetsStart + i * 4);
+      if (entryOffset != Entry.NO_ENTRY) {
+        entries[i] = Entry.newInstance(buffer, offset + entryOffset, this);
+        ++presentEntryCount;
       }
     }
   }
@@ -97,6 +135,7 @@ public final class TypeChunk extends Chunk {
    * @param configuration The new configuration.
    */
   public void setConfiguration(BinaryResourceConfiguration configuration) {
+    checkNotFrozen();
     this.configuration = configuration;
   }
 
@@ -105,19 +144,51 @@ public final class TypeChunk extends Chunk {
     return entryCount;
   }
 
-  /** Returns a sparse list of 0-based indices to resource entries defined by this chunk. */
+  /**
+   * Returns a sparse list of 0-based indices to resource entries defined by this chunk. The map is
+   * a read-only view ordered by index, and changes to this chunk's entries are reflected in it.
+   */
   public Map<Integer, Entry> getEntries() {
-    return Collections.unmodifiableMap(entries);
+    initDeferred();
+    return new EntryMap();
+  }
+
+  /**
+   * Returns the entry at the given 0-based index, or null if there is no entry at that index.
+   *
+   * @param index The 0-based index of the entry.
+   */
+  @Nullable
+  public Entry getEntry(int index) {
+    initDeferred();
+    if (index < 0 || index >= entries.length) {
+      return null;
+    }
+    Entry entry = entries[index];
+    if (entry == null && entryOffsets != null && entryOffsets[index] != Entry.NO_ENTRY) {
+      entry = Entry.newInstance(
+          Preconditions.checkNotNull(entryBuffer), entryOffsets[index], this);
+      entries[index] = entry;
+    }
+    return entry;
+  }
+
+  /** Returns true if there is an entry at the given 0-based index. */
+  public boolean hasEntry(int index) {
+    initDeferred();
+    return index >= 0 && index < entries.length && (entries[index] != null
+        || (entryOffsets != null && entryOffsets[index] != Entry.NO_ENTRY));
   }
 
   /** Returns true if this chunk contains an entry for {@code resourceId}. */
   public boolean containsResource(BinaryResourceIdentifier resourceId) {
+    initDeferred();
     PackageChunk packageChunk = Preconditions.checkNotNull(getPackageChunk());
     int packageId = packageChunk.getId();
     int typeId = getId();
     return resourceId.packageId() == packageId
         && resourceId.typeId() == typeId
-        && entries.containsKey(resourceId.entryId());
+        && hasEntry(resourceId.entryId());
   }
 
   /**
@@ -130,6 +201,7 @@ public final class TypeChunk extends Chunk {
    * @param entries A sparse list containing index:entry pairs to override.
    */
   public void overrideEntries(Map<Integer, Entry> entries) {
+    checkNotFrozen();
     for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
       int index = entry.getKey() != null ? entry.getKey() : -1;
       overrideEntry(index, entry.getValue());
@@ -144,13 +216,31 @@ public final class TypeChunk extends Chunk {
    * @param entry The entry to override, or null if the entry should be removed at this location.
    */
   public void overrideEntry(int index, @Nullable Entry entry) {
+    checkNotFrozen();
+    initDeferred();
     if (index >= 0 && index < entryCount) {
+      if (hasEntry(index)) {
+        --presentEntryCount;
+      }
       if (entry != null) {
-        entries.put(index, entry);
-      } else {
-        entries.remove(index);
+        ++presentEntryCount;
+      } else if (entryOffsets != null) {
+        entryOffsets[index] = Entry.NO_ENTRY;
       }
+      entries[index] = entry;
+    }
+  }
+
+  @Override
+  protected void freeze() {
+    super.freeze();
+    // Create any entries that would otherwise be created on access, so reads no longer write.
+    for (int i = 0; i < entries.length; ++i) {
+      Entry entry = getEntry(i);
+      entries[i] = entry;
     }
+    entryOffsets = null;
+    entryBuffer = null;
   }
 
   protected String getString(int index) {
@@ -196,18 +286,17 @@ public final class TypeChunk extends Chunk {
     return entryCount * 4;
   }
 
-  private int writeEntries(DataOutput payload, ByteBuffer offsets, boolean shrink)
+  private int writeEntries(ChunkOutput payload, ByteBuffer offsets, boolean shrink)
       throws IOException {
     int entryOffset = 0;
     for (int i = 0; i < entryCount; ++i) {
-      Entry entry = entries.get(i);
+      Entry entry = getEntry(i);
       if (entry == null) {
         offsets.putInt(Entry.NO_ENTRY);
       } else {
-        byte[] encodedEntry = entry.toByteArray(shrink);
-        payload.write(encodedEntry);
+        entry.writeTo(payload);
         offsets.putInt(entryOffset);
-        entryOffset += encodedEntry.length;
+        entryOffset += entry.size();
       }
     }
     entryOffset = writePad(payload, entryOffset);
@@ -224,18 +313,94 @@ public final class TypeChunk extends Chunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    int offsetsStart = output.size();
     ByteBuffer offsets = ByteBuffer.allocate(getOffsetSize()).order(ByteOrder.LITTLE_ENDIAN);
-    try (LittleEndianDataOutputStream payload = new LittleEndianDataOutputStream(baos)) {
-      writeEntries(payload, offsets, shrink);
+    // The offsets come first, but are only known once the entries have been written
+    output.skip(getOffsetSize());
+    writeEntries(output, offsets, shrink);
+    output.put(offsetsStart, offsets.array());
+  }
+
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    int entriesSize = 0;
+    for (int i = 0; i < entryCount; ++i) {
+      Entry entry = getEntry(i);
+      if (entry != null) {
+        entriesSize += entry.serializedSize(shrink);
+      }
     }
-    output.write(offsets.array());
-    output.write(baos.toByteArray());
+    return getOffsetSize() + padLength(entriesSize);
   }
 
-  /** An {@link Entry} in a {@link TypeChunk}. Contains one or more {@link BinaryResourceValue}. */
+  /** A read-only, index ordered view of the present entries in this chunk. */
+  private final class EntryMap extends AbstractMap<Integer, TypeChunk.Entry> {
+
+    @Override
+    public int size() {
+      return presentEntryCount;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof Integer && hasEntry((Integer) key);
+    }
+
+    @Override
+    public TypeChunk.Entry get(Object key) {
+      return key instanceof Integer ? getEntry((Integer) key) : null;
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, TypeChunk.Entry>> entrySet() {
+      return new AbstractSet<Map.Entry<Integer, TypeChunk.Entry>>() {
+        @Override
+        public int size() {
+          return presentEntryCount;
+        }
+
+        @Override
+        public Iterator<Map.Entry<Integer, TypeChunk.Entry>> iterator() {
+          return new Iterator<Map.Entry<Integer, TypeChunk.Entry>>() {
+            private int next = advance(0);
+
+            private int advance(int index) {
+              while (index < entries.length && !hasEntry(index)) {
+                ++index;
+              }
+              return index;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return next < entries.length;
+            }
+
+            @Override
+            public Map.Entry<Integer, TypeChunk.Entry> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int index = next;
+              next = advance(index + 1);
+              return new AbstractMap.SimpleImmutableEntry<>(index, getEntry(index));
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * An {@link Entry} in a {@link TypeChunk}. Contains one or more {@link BinaryResourceValue}.
+   *
+   * <p>Values are held packed into {@code long}s (see {@link BinaryResourceValue#pack}), so
+   * reading an entry does not allocate an object per value. {@link #value} and {@link #values}
+   * create {@link BinaryResourceValue} objects when called, while {@link #packedValue()},
+   * {@link #valueKey} and {@link #packedValue(int)} read the packed values directly.
+   */
   public static class Entry implements SerializableResource {
 
     /** An entry offset that indicates that a given resource is not present. */
@@ -247,25 +412,34 @@ public final class TypeChunk extends Chunk {
     /** Size of a single resource id + value mapping entry. */
     private static final int MAPPING_SIZE = 4 + BinaryResourceValue.SIZE;
 
+    private static final int[] NO_KEYS = new int[0];
+    private static final long[] NO_VALUES = new long[0];
+
     private final int headerSize;
     private final int flags;
     private final int keyIndex;
-    private final BinaryResourceValue value;
-    private final Map<Integer, BinaryResourceValue> values;
+    /** The packed value if this is not a complex entry. */
+    private final long value;
+    /** The resource ids of the values of a complex entry, parallel to {@code values}. */
+    private final int[] valueKeys;
+    /** The packed values of a complex entry, parallel to {@code valueKeys}. */
+    private final long[] values;
     private final int parentEntry;
     private final TypeChunk parent;
 
     private Entry(int headerSize,
                   int flags,
                   int keyIndex,
-                  BinaryResourceValue value,
-                  Map<Integer, BinaryResourceValue> values,
+                  long value,
+                  int[] valueKeys,
+                  long[] values,
                   int parentEntry,
                   TypeChunk parent) {
       this.headerSize = headerSize;
       this.flags = flags;
       this.keyIndex = keyIndex;
       this.value = value;
+      this.valueKeys = valueKeys;
       this.values = values;
       this.parentEntry = parentEntry;
       this.parent = parent;
@@ -282,10 +456,30 @@ public final class TypeChunk extends Chunk {
 
     /** The value of this resource entry, if this is not a complex entry. Else, null. */
     @Nullable
-    public BinaryResourceValue value() { return value; }
+    public BinaryResourceValue value() {
+      return isComplex() ? null : BinaryResourceValue.fromPacked(value);
+    }
+
+    /**
+     * The value of this resource entry packed into a {@code long}, if this is not a complex entry.
+     * Else, 0.
+     */
+    public long packedValue() { return isComplex() ? 0 : value; }
+
+    /**
+     * A read-only view of the extra values in this resource entry if this {@link #isComplex},
+     * keyed by resource id.
+     */
+    public Map<Integer, BinaryResourceValue> values() { return new ValueMap(); }
+
+    /** The number of extra values in this resource entry. */
+    public int valueCount() { return valueKeys.length; }
 
-    /** The extra values in this resource entry if this {@link #isComplex}. */
-    public Map<Integer, BinaryResourceValue> values() { return values; }
+    /** The resource id of the extra value at {@code index}. */
+    public int valueKey(int index) { return valueKeys[index]; }
+
+    /** The extra value at {@code index}, packed into a {@code long}. */
+    public long packedValue(int index) { return values[index]; }
 
     /**
      * Entry into {@link PackageChunk} that is the parent {@link Entry} to this entry.
@@ -303,7 +497,7 @@ public final class TypeChunk extends Chunk {
 
     /** The total number of bytes that this {@link Entry} takes up. */
     public final int size() {
-      return headerSize() + (isComplex() ? values().size() * MAPPING_SIZE : BinaryResourceValue.SIZE);
+      return headerSize() + (isComplex() ? values.length * MAPPING_SIZE : BinaryResourceValue.SIZE);
     }
 
     /** Returns the key name identifying this resource entry. */
@@ -335,31 +529,72 @@ public final class TypeChunk extends Chunk {
       if (offset == NO_ENTRY) {
         return null;
       }
-      int position = buffer.position();
-      buffer.position(baseOffset + offset);  // Set buffer position to resource entry start
-      Entry result = newInstance(buffer, parent);
-      buffer.position(position);  // Restore buffer position
-      return result;
+      return newInstance(buffer, baseOffset + offset, parent);
     }
 
-    @Nullable
-    private static Entry newInstance(ByteBuffer buffer, TypeChunk parent) {
-      int headerSize = buffer.getShort() & 0xFFFF;
-      int flags = buffer.getShort() & 0xFFFF;
-      int keyIndex = buffer.getInt();
-      BinaryResourceValue value = null;
-      Map<Integer, BinaryResourceValue> values = new LinkedHashMap<>();
-      int parentEntry = 0;
-      if ((flags & FLAG_COMPLEX) != 0) {
-        parentEntry = buffer.getInt();
-        int valueCount = buffer.getInt();
-        for (int i = 0; i < valueCount; ++i) {
-          values.put(buffer.getInt(), BinaryResourceValue.create(buffer));
+    /** Creates the {@link Entry} at {@code offset}, without changing the position of the buffer. */
+    private static Entry newInstance(ByteBuffer buffer, int offset, TypeChunk parent) {
+      int headerSize = buffer.getShort(offset) & 0xFFFF;
+      int flags = buffer.getShort(offset + 2) & 0xFFFF;
+      int keyIndex = buffer.getInt(offset + 4);
+      if ((flags & FLAG_COMPLEX) == 0) {
+        long value = BinaryResourceValue.readPacked(buffer, offset + 8);
+        return new Entry(headerSize, flags, keyIndex, value, NO_KEYS, NO_VALUES, 0, parent);
+      }
+      int parentEntry = buffer.getInt(offset + 8);
+      int valueCount = buffer.getInt(offset + 12);
+      // Each value is a 4-byte key followed by a BinaryResourceValue.
+      int valueOffset = offset + 16;
+      // Bounded by the buffer, as the count may be corrupt. Reading past the buffer fails first.
+      int capacity =
+          Math.max(0, Math.min(valueCount, (buffer.limit() - valueOffset) / MAPPING_SIZE));
+      int[] valueKeys = new int[capacity];
+      long[] values = new long[capacity];
+      int count = 0;
+      for (int i = 0; i < valueCount; ++i) {
+        int key = buffer.getInt(valueOffset);
+        long value = BinaryResourceValue.readPacked(buffer, valueOffset + 4);
+        valueOffset += MAPPING_SIZE;
+        // Keys are normally ascending. A repeated key replaces the earlier value in its place.
+        int index = count > 0 && key <= valueKeys[count - 1] ? indexOf(valueKeys, count, key) : -1;
+        if (index >= 0) {
+          values[index] = value;
+        } else {
+          valueKeys[count] = key;
+          values[count++] = value;
+        }
+      }
+      if (count < capacity) {
+        valueKeys = Arrays.copyOf(valueKeys, count);
+        values = Arrays.copyOf(values, count);
+      }
+      return new Entry(headerSize, flags, keyIndex, 0, valueKeys, values, parentEntry, parent);
+    }
+
+    private static int indexOf(int[] keys, int count, int key) {
+      for (int i = 0; i < count; ++i) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /** Writes this entry to {@code output}, in the same form as {@link #toByteArray}. */
+    void writeTo(ChunkOutput output) throws IOException {
+      output.writeShort(headerSize());
+      output.writeShort(flags());
+      output.writeInt(keyIndex());
+      if (isComplex()) {
+        output.writeInt(parentEntry());
+        output.writeInt(values.length);
+        for (int i = 0; i < values.length; ++i) {
+          output.writeInt(valueKeys[i]);
+          BinaryResourceValue.writePacked(output, values[i]);
         }
       } else {
-        value = BinaryResourceValue.create(buffer);
+        BinaryResourceValue.writePacked(output, value);
       }
-      return new Entry(headerSize, flags, keyIndex, value, values, parentEntry, parent);
     }
 
     @Override
@@ -369,24 +604,18 @@ public final class TypeChunk extends Chunk {
 
     @Override
     public final byte[] toByteArray(boolean shrink) {
-      ByteBuffer buffer = ByteBuffer.allocate(size());
-      buffer.order(ByteOrder.LITTLE_ENDIAN);
-      buffer.putShort((short) headerSize());
-      buffer.putShort((short) flags());
-      buffer.putInt(keyIndex());
-      if (isComplex()) {
-        buffer.putInt(parentEntry());
-        buffer.putInt(values().size());
-        for (Map.Entry<Integer, BinaryResourceValue> entry : values().entrySet()) {
-          buffer.putInt(entry.getKey());
-          buffer.put(entry.getValue().toByteArray(shrink));
-        }
-      } else {
-        BinaryResourceValue value = value();
-        Preconditions.checkNotNull(value, "A non-complex TypeChunk entry must have a value.");
-        buffer.put(value.toByteArray());
+      ChunkOutput output = new ChunkOutput(size());
+      try {
+        writeTo(output);
+      } catch (IOException e) {
+        throw new AssertionError(e);  // ChunkOutput does not throw.
       }
-      return buffer.array();
+      return output.toByteArray();
+    }
+
+    @Override
+    public final int serializedSize(boolean shrink) {
+      return size();
     }
 
     @Override
@@ -403,14 +632,69 @@ public final class TypeChunk extends Chunk {
              flags == entry.flags &&
              keyIndex == entry.keyIndex &&
              parentEntry == entry.parentEntry &&
-             Objects.equals(value, entry.value) &&
-             Objects.equals(values, entry.values) &&
+             Objects.equals(value(), entry.value()) &&
+             values().equals(entry.values()) &&
              Objects.equals(parent, entry.parent);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(headerSize, flags, keyIndex, value, values, parentEntry, parent);
+      return Objects.hash(headerSize, flags, keyIndex, value(), values(), parentEntry, parent);
+    }
+
+    /** A read-only view of {@link #valueKeys} and {@link #values} as a map. */
+    private final class ValueMap extends AbstractMap<Integer, BinaryResourceValue> {
+
+      @Override
+      public int size() {
+        return valueKeys.length;
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return key instanceof Integer && indexOf(valueKeys, valueKeys.length, (Integer) key) >= 0;
+      }
+
+      @Override
+      public BinaryResourceValue get(Object key) {
+        if (!(key instanceof Integer)) {
+          return null;
+        }
+        int index = indexOf(valueKeys, valueKeys.length, (Integer) key);
+        return index >= 0 ? BinaryResourceValue.fromPacked(values[index]) : null;
+      }
+
+      @Override
+      public Set<Map.Entry<Integer, BinaryResourceValue>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, BinaryResourceValue>>() {
+          @Override
+          public int size() {
+            return valueKeys.length;
+          }
+
+          @Override
+          public Iterator<Map.Entry<Integer, BinaryResourceValue>> iterator() {
+            return new Iterator<Map.Entry<Integer, BinaryResourceValue>>() {
+              private int index;
+
+              @Override
+              public boolean hasNext() {
+                return index < valueKeys.length;
+              }
+
+              @Override
+              public Map.Entry<Integer, BinaryResourceValue> next() {
+                if (!hasNext()) {
+                  throw new NoSuchElementException();
+                }
+                int i = index++;
+                return new AbstractMap.SimpleImmutableEntry<>(
+                    valueKeys[i], BinaryResourceValue.fromPacked(values[i]));
+              }
+            };
+          }
+        };
+      }
     }
   }
 }
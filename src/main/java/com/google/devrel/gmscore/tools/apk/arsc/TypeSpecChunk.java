@@ -20,7 +20,6 @@ import javax.annotation.Nullable;
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.UnsignedBytes;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
@@ -40,8 +39,9 @@ public final class TypeSpecChunk extends Chunk {
     int resourceCount = buffer.getInt();
     resources = new int[resourceCount];
 
+    int masksStart = buffer.position();
     for (int i = 0; i < resourceCount; ++i) {
-      resources[i] = buffer.getInt();
+      resources[i] = buffer.getInt(masksStart + i * 4);
     }
   }
 
@@ -92,10 +92,15 @@ public final class TypeSpecChunk extends Chunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     for (int resource : resources) {
       output.writeInt(resource);
     }
   }
+
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    return resources.length * 4;
+  }
 }
@@ -18,7 +18,6 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
@@ -50,11 +49,16 @@ public final class UnknownChunk extends Chunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     output.write(payload);
   }
 
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    return payload.length;
+  }
+
   @Override
   protected Type getType() {
     return type;
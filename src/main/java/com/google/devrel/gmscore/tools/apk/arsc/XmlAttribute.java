@@ -30,7 +30,8 @@ public class XmlAttribute implements SerializableResource {
   private final int namespaceIndex;
   private final int nameIndex;
   private final int rawValueIndex;
-  private final BinaryResourceValue typedValue;
+  /** The typed value, packed into a {@code long}. See {@link BinaryResourceValue#pack}. */
+  private final long typedValue;
   private final XmlNodeChunk parent;
 
   /**
@@ -40,10 +41,24 @@ public class XmlAttribute implements SerializableResource {
    * @param parent The parent chunk that contains this attribute; used for string lookups.
    */
   public static XmlAttribute create(ByteBuffer buffer, XmlNodeChunk parent) {
-    int namespace = buffer.getInt();
-    int name = buffer.getInt();
-    int rawValue = buffer.getInt();
-    BinaryResourceValue typedValue = BinaryResourceValue.create(buffer);
+    XmlAttribute result = create(buffer, buffer.position(), parent);
+    buffer.position(buffer.position() + SIZE);
+    return result;
+  }
+
+  /**
+   * Creates a new {@link XmlAttribute} based on the bytes at {@code offset}, without changing the
+   * position of {@code buffer}.
+   *
+   * @param buffer The buffer to read from.
+   * @param offset The absolute offset in {@code buffer} of the attribute.
+   * @param parent The parent chunk that contains this attribute; used for string lookups.
+   */
+  public static XmlAttribute create(ByteBuffer buffer, int offset, XmlNodeChunk parent) {
+    int namespace = buffer.getInt(offset);
+    int name = buffer.getInt(offset + 4);
+    int rawValue = buffer.getInt(offset + 8);
+    long typedValue = BinaryResourceValue.readPacked(buffer, offset + LOCAL_SIZE);
     return new XmlAttribute(namespace, name, rawValue, typedValue, parent);
   }
 
@@ -54,13 +69,13 @@ public class XmlAttribute implements SerializableResource {
    * @see #SIZE Typical size, generally 20. However, obfuscators can tamper with this data to change the size.
    */
   public int size() {
-    return LOCAL_SIZE + typedValue().size();
+    return LOCAL_SIZE + BinaryResourceValue.packedSize(typedValue);
   }
 
   private XmlAttribute(int namespaceIndex,
                       int nameIndex,
                       int rawValueIndex,
-                      BinaryResourceValue typedValue,
+                      long typedValue,
                       XmlNodeChunk parent) {
     this.namespaceIndex = namespaceIndex;
     this.nameIndex = nameIndex;
@@ -86,6 +101,15 @@ public class XmlAttribute implements SerializableResource {
 
   /** A {@link BinaryResourceValue} instance containing the parsed value. */
   public BinaryResourceValue typedValue() {
+    return BinaryResourceValue.fromPacked(typedValue);
+  }
+
+  /**
+   * The parsed value packed into a {@code long}, read with
+   * {@link BinaryResourceValue#packedType} and {@link BinaryResourceValue#packedData}.
+   * Unlike {@link #typedValue()}, this does not allocate.
+   */
+  public long packedTypedValue() {
     return typedValue;
   }
 
@@ -124,10 +148,19 @@ public class XmlAttribute implements SerializableResource {
     buffer.putInt(namespaceIndex());
     buffer.putInt(nameIndex());
     buffer.putInt(rawValueIndex());
-    buffer.put(typedValue().toByteArray(shrink));
+    // The value always fills the rest of the attribute, even if a tampered size was read.
+    buffer.putShort((short) BinaryResourceValue.SIZE);
+    buffer.put((byte) 0);  // Unused
+    buffer.put(BinaryResourceValue.packedType(typedValue).code());
+    buffer.putInt(BinaryResourceValue.packedData(typedValue));
     return buffer.array();
   }
 
+  @Override
+  public int serializedSize(boolean shrink) {
+    return SIZE;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -136,7 +169,7 @@ public class XmlAttribute implements SerializableResource {
     return namespaceIndex == that.namespaceIndex &&
            nameIndex == that.nameIndex &&
            rawValueIndex == that.rawValueIndex &&
-           Objects.equals(typedValue, that.typedValue) &&
+           typedValue == that.typedValue &&
            Objects.equals(parent, that.parent);
   }
 
@@ -18,7 +18,6 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
@@ -53,13 +52,18 @@ public final class XmlCdataChunk extends XmlNodeChunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     super.writePayload(output, header, shrink);
     output.writeInt(rawValue);
     output.write(binaryResourceValue.toByteArray());
   }
 
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    return super.getPayloadSize(shrink) + 4 + binaryResourceValue.serializedSize(false);
+  }
+
   /**
    * Returns a brief description of this XML node. The representation of this information is
    * subject to change, but below is a typical example:
@@ -18,7 +18,6 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
@@ -48,13 +47,18 @@ public abstract class XmlNamespaceChunk extends XmlNodeChunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     super.writePayload(output, header, shrink);
     output.writeInt(prefix);
     output.writeInt(uri);
   }
 
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    return super.getPayloadSize(shrink) + 8;
+  }
+
   /**
    * Returns a brief description of this namespace chunk. The representation of this information is
    * subject to change, but below is a typical example:
@@ -18,11 +18,8 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nullable;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Represents an XML resource map chunk.
@@ -37,55 +34,79 @@ public class XmlResourceMapChunk extends Chunk {
 
   /**
    * Contains a mapping of attributeID to resourceID. For example, the attributeID 2 refers to the
-   * resourceID returned by {@code resources.get(2)}.
+   * resourceID at {@code resources[2]}.
    */
-  private final List<Integer> resources = new ArrayList<>();
+  private int[] resources = new int[0];
 
   protected XmlResourceMapChunk(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
   }
 
+  @Override
+  protected boolean canDeferInit() {
+    return true;
+  }
+
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
-    resources.addAll(enumerateResources(buffer));
+    resources = enumerateResources(buffer);
   }
 
-  private List<Integer> enumerateResources(ByteBuffer buffer) {
+  private int[] enumerateResources(ByteBuffer buffer) {
     int resourceCount = (getOriginalChunkSize() - getHeaderSize()) / RESOURCE_SIZE;
-    List<Integer> result = new ArrayList<>(resourceCount);
+    int[] result = new int[resourceCount];
     int offset = this.offset + getHeaderSize();
-    buffer.mark();
-    buffer.position(offset);
-
     for (int i = 0; i < resourceCount; ++i) {
-      result.add(buffer.getInt());
+      result[i] = buffer.getInt(offset + i * RESOURCE_SIZE);
     }
-
-    buffer.reset();
     return result;
   }
 
   /** Returns the resource ID that this {@code attributeId} maps to or null. */
   @Nullable
   public BinaryResourceIdentifier getResourceId(int attributeId) {
-    if (attributeId >= 0 && resources.size() > attributeId) {
-      return BinaryResourceIdentifier.create(resources.get(attributeId));
+    initDeferred();
+    if (attributeId >= 0 && resources.length > attributeId) {
+      return BinaryResourceIdentifier.create(resources[attributeId]);
     }
     return null;
   }
 
+  /**
+   * Returns the resource ID of the form 0xpptteeee that this {@code attributeId} maps to, or 0 if
+   * there is none. Unlike {@link #getResourceId}, this does not allocate.
+   */
+  public int getRawResourceId(int attributeId) {
+    initDeferred();
+    if (attributeId >= 0 && resources.length > attributeId) {
+      return resources[attributeId];
+    }
+    return 0;
+  }
+
+  /** Returns the number of attribute ids that this chunk maps to resource IDs. */
+  public int getResourceCount() {
+    initDeferred();
+    return resources.length;
+  }
+
   @Override
   protected Type getType() {
     return Type.XML_RESOURCE_MAP;
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     super.writePayload(output, header, shrink);
-    for (Integer resource : resources) {
+    for (int resource : resources) {
       output.writeInt(resource);
     }
   }
+
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    return super.getPayloadSize(shrink) + resources.length * RESOURCE_SIZE;
+  }
 }
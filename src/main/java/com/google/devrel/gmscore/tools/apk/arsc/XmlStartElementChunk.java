@@ -19,7 +19,6 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 import javax.annotation.Nullable;
 import com.google.common.base.Preconditions;
 
-import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -69,6 +68,11 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
     styleIndex = (buffer.getShort() & 0xFFFF) - 1;
   }
 
+  @Override
+  protected boolean canDeferInit() {
+    return true;
+  }
+
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
@@ -78,22 +82,14 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
   private List<XmlAttribute> enumerateAttributes(ByteBuffer buffer) {
     List<XmlAttribute> result = new ArrayList<>(attributeCount);
     int offset = this.offset + getHeaderSize() + attributeStart;
-    int endOffset = offset + XmlAttribute.SIZE * attributeCount;
-    buffer.mark();
-    buffer.position(offset);
 
-    // The original logic was 'offset < endOffset' however we have changed the += on offset to be a variable size
-    // and adjusted the buffer to match the offset. So instead we now do a count check.
+    // The original logic was 'offset < endOffset' however we have changed the += on offset to be a variable size,
+    // since the attribute's reported size may be tampered with. So instead we now do a count check.
     while (result.size() < attributeCount) {
-      XmlAttribute attribute = XmlAttribute.create(buffer, this);
+      XmlAttribute attribute = XmlAttribute.create(buffer, offset, this);
       result.add(attribute);
       offset += attribute.size();
-
-      // The buffer should be positioned to be just after the current offset plus the attribute's reported size.
-      buffer.position(offset);
     }
-
-    buffer.reset();
     return result;
   }
 
@@ -109,6 +105,7 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
 
   /** Returns an unmodifiable list of this XML element's attributes. */
   public List<XmlAttribute> getAttributes() {
+    initDeferred();
     return Collections.unmodifiableList(attributes);
   }
 
@@ -118,7 +115,7 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
   }
 
   @Override
-  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+  protected void writePayload(ChunkOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     super.writePayload(output, header, shrink);
     output.writeInt(namespace);
@@ -134,6 +131,15 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
     }
   }
 
+  @Override
+  protected int getPayloadSize(boolean shrink) {
+    int size = super.getPayloadSize(shrink) + 20;  // namespace, name and 6 shorts.
+    for (XmlAttribute attribute : attributes) {
+      size += attribute.serializedSize(shrink);
+    }
+    return size;
+  }
+
   /**
    * Returns a brief description of this XML node. The representation of this information is
    * subject to change, but below is a typical example:
@@ -146,6 +152,6 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
   public String toString() {
     return String.format(
         "XmlStartElementChunk{line=%d, comment=%s, namespace=%s, name=%s, attributes=%s}",
-        getLineNumber(), getComment(), getNamespace(), getName(), attributes.toString());
+        getLineNumber(), getComment(), getNamespace(), getName(), getAttributes().toString());
   }
 }
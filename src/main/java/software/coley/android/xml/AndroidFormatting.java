@@ -44,7 +44,14 @@ public class AndroidFormatting {
 			1.0f / (1 << 23) * MANTISSA_MULT
 	};
 	public static final int COMPLEX_MANTISSA_MASK = 0xffffff;
+	/**
+	 * @deprecated No longer used for formatting, values are appended by {@link #appendDimension(StringBuilder, int)}
+	 * and {@link #appendFraction(StringBuilder, int)}. A {@link DecimalFormat} is not safe to share between threads.
+	 */
+	@Deprecated
 	public static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#.0000");
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final int FRACTION_SCALE = 10_000;
 
 	/**
 	 * @param data
@@ -54,10 +61,7 @@ public class AndroidFormatting {
 	 */
 	@Nonnull
 	public static String toDimensionString(int data) {
-		double value = getValue(data);
-		int unitType = data & COMPLEX_UNIT_MASK;
-		String unit = getComplexUnit(unitType);
-		return getValueString(value) + unit;
+		return appendDimension(new StringBuilder(16), data).toString();
 	}
 
 	/**
@@ -67,12 +71,66 @@ public class AndroidFormatting {
 	 * @return Output human-readable fraction string.
 	 */
 	public static String toFractionString(int data) {
-		double value = getValue(data);
-		int unitType = data & COMPLEX_UNIT_MASK;
-		String unit = getFractionalUnit(unitType);
+		return appendFraction(new StringBuilder(16), data).toString();
+	}
 
+	/**
+	 * @param builder
+	 * 		Builder to append to.
+	 * @param data
+	 * 		Input packed data.
+	 *
+	 * @return The builder, with the human-readable dimension string appended.
+	 */
+	@Nonnull
+	public static StringBuilder appendDimension(@Nonnull StringBuilder builder, int data) {
+		appendValue(builder, getValue(data));
+		return builder.append(getComplexUnit(data & COMPLEX_UNIT_MASK));
+	}
 
-		return getValueString(value * 100) + unit;
+	/**
+	 * @param builder
+	 * 		Builder to append to.
+	 * @param data
+	 * 		Input packed data.
+	 *
+	 * @return The builder, with the human-readable fraction string appended.
+	 */
+	@Nonnull
+	public static StringBuilder appendFraction(@Nonnull StringBuilder builder, int data) {
+		appendValue(builder, getValue(data) * 100);
+		return builder.append(getFractionalUnit(data & COMPLEX_UNIT_MASK));
+	}
+
+	/**
+	 * @param builder
+	 * 		Builder to append to.
+	 * @param value
+	 * 		Value to append.
+	 *
+	 * @return The builder, with the value appended as lowercase hex digits, like {@link Integer#toHexString(int)}.
+	 */
+	@Nonnull
+	public static StringBuilder appendHex(@Nonnull StringBuilder builder, int value) {
+		return appendHex(builder, value, 1);
+	}
+
+	/**
+	 * @param builder
+	 * 		Builder to append to.
+	 * @param value
+	 * 		Value to append.
+	 * @param minDigits
+	 * 		Minimum number of digits to append, padded with leading zeros.
+	 *
+	 * @return The builder, with the value appended as lowercase hex digits.
+	 */
+	@Nonnull
+	public static StringBuilder appendHex(@Nonnull StringBuilder builder, int value, int minDigits) {
+		int digits = Math.max(minDigits, (35 - Integer.numberOfLeadingZeros(value)) >> 2);
+		for (int i = digits - 1; i >= 0; i--)
+			builder.append(i >= 8 ? '0' : HEX_DIGITS[(value >>> (i << 2)) & 0xF]);
+		return builder;
 	}
 
 	/**
@@ -124,9 +182,25 @@ public class AndroidFormatting {
 		return (data & COMPLEX_MANTISSA_MASK << COMPLEX_MANTISSA_SHIFT) * RADIX_MULTS[multIndex];
 	}
 
-	private static String getValueString(double value) {
-		if (Double.compare(value, Math.floor(value)) == 0 && !Double.isInfinite(value))
-			return Integer.toString((int) value);
-		return DECIMAL_FORMAT.format(value);
+	/**
+	 * Appends whole values without a fraction, and others like the {@link DecimalFormat} pattern {@code #.0000}.
+	 * Values are fixed point numbers with at most 31 fraction bits, so scaling them by {@code 10^4} is exact,
+	 * and rounding the scaled value half-even rounds exactly like {@link DecimalFormat} does.
+	 */
+	private static void appendValue(@Nonnull StringBuilder builder, double value) {
+		if (Double.compare(value, Math.floor(value)) == 0 && !Double.isInfinite(value)) {
+			builder.append((int) value);
+			return;
+		}
+		long scaled = (long) Math.rint(Math.abs(value) * FRACTION_SCALE);
+		if (value < 0)
+			builder.append('-');
+		long whole = scaled / FRACTION_SCALE;
+		if (whole != 0)
+			builder.append(whole);
+		builder.append('.');
+		int fraction = (int) (scaled % FRACTION_SCALE);
+		for (int divisor = FRACTION_SCALE / 10; divisor > 0; divisor /= 10)
+			builder.append((char) ('0' + fraction / divisor % 10));
 	}
 }
@@ -39,10 +39,52 @@ public interface AndroidResourceProvider {
 	 * 		Flag value mask.
 	 *
 	 * @return Flag names <i>(Separated by {@code |})</i> for the associated value if known, otherwise {@code null}.
+	 * Values are decomposed as by {@link FlagTable#getFlagNames(int)}, so {@code null} is also returned when some
+	 * bits of the value do not belong to any flag, rather than an empty string or a partial list of names.
 	 */
 	@Nullable
 	String getResFlagNames(String resName, long mask);
 
+	/**
+	 * @param attrResId
+	 * 		Resource ID of an attribute.
+	 *
+	 * @return {@code true} when the attribute is a known flag.
+	 * By default, the attribute is looked up by the name of its resource.
+	 */
+	default boolean hasResFlag(int attrResId) {
+		String attrName = getAttrName(attrResId);
+		return attrName != null && hasResFlag(attrName);
+	}
+
+	/**
+	 * @param attrResId
+	 * 		Resource ID of an attribute.
+	 * @param mask
+	 * 		Flag value mask.
+	 *
+	 * @return Flag names <i>(Separated by {@code |})</i> for the associated value if known, otherwise {@code null}.
+	 * Values are decomposed as by {@link #getResFlagNames(String, long)}.
+	 * By default, the attribute is looked up by the name of its resource.
+	 */
+	@Nullable
+	default String getResFlagNames(int attrResId, long mask) {
+		String attrName = getAttrName(attrResId);
+		return attrName == null ? null : getResFlagNames(attrName, mask);
+	}
+
+	/**
+	 * @param attrResId
+	 * 		Resource ID of a flag attribute.
+	 *
+	 * @return Compiled flags of the attribute, or {@code null} if not known or not supported by this provider.
+	 * When present, decoders prefer the table over {@link #getResFlagNames(String, long)}.
+	 */
+	@Nullable
+	default FlagTable getResFlagTable(int attrResId) {
+		return null;
+	}
+
 	/**
 	 * @param resName
 	 * 		Resource name.
@@ -61,4 +103,46 @@ public interface AndroidResourceProvider {
 	 */
 	@Nullable
 	String getResEnumName(String resName, long value);
+
+	/**
+	 * @param attrResId
+	 * 		Resource ID of an attribute.
+	 *
+	 * @return {@code true} when the attribute is a known enum.
+	 * By default, the attribute is looked up by the name of its resource.
+	 */
+	default boolean hasResEnum(int attrResId) {
+		String attrName = getAttrName(attrResId);
+		return attrName != null && hasResEnum(attrName);
+	}
+
+	/**
+	 * @param attrResId
+	 * 		Resource ID of an attribute.
+	 * @param value
+	 * 		Enum value key.
+	 *
+	 * @return Enum name for the associated value if known, otherwise {@code null}.
+	 * By default, the attribute is looked up by the name of its resource.
+	 */
+	@Nullable
+	default String getResEnumName(int attrResId, long value) {
+		String attrName = getAttrName(attrResId);
+		return attrName == null ? null : getResEnumName(attrName, value);
+	}
+
+	/**
+	 * @param attrResId
+	 * 		Resource ID of an attribute.
+	 *
+	 * @return Name of the attribute without its {@code attr/} prefix, as used by the name based lookups,
+	 * or {@code null} if the resource is not a known attribute.
+	 */
+	@Nullable
+	default String getAttrName(int attrResId) {
+		String resName = getResName(attrResId);
+		if (resName == null || !resName.startsWith("attr/"))
+			return null;
+		return resName.substring(5);
+	}
 }
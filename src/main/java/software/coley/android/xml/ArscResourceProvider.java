@@ -0,0 +1,357 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.PackageChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.TypeChunk;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only {@link AndroidResourceProvider} of the resources in a {@link ResourceTableChunk}, such as the
+ * {@code resources.arsc} of an application.
+ * <p>
+ * All lookup tables are built up front, so the table can be discarded afterwards. Resource ids are held in
+ * a sorted {@code int[]} searched without boxing, the enum values of each {@code attr} resource are held in sorted
+ * arrays, and flag values are compiled into a {@link FlagTable}. Both are indexed by attribute name, and by attribute
+ * resource id in sorted arrays. Instances are safe to share between threads.
+ */
+public class ArscResourceProvider implements AndroidResourceProvider {
+	/** Key of the map value of an attribute, holding the types of values the attribute accepts. */
+	private static final int ATTR_TYPE = 0x01000000;
+	/** Type bit of an attribute accepting enum values. */
+	private static final int TYPE_ENUM = 1 << 16;
+	/** Type bit of an attribute accepting flag values. */
+	private static final int TYPE_FLAGS = 1 << 17;
+	private final int[] ids;
+	private final String[] names;
+	private final Map<String, ValueTable> enums = new HashMap<>();
+	private final Map<String, FlagTable> flags = new HashMap<>();
+	private final int[] enumIds;
+	private final ValueTable[] enumTables;
+	private final int[] flagIds;
+	private final FlagTable[] flagTables;
+
+	/**
+	 * @param file
+	 * 		File containing a resource table.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the file does not contain a resource table.
+	 */
+	public ArscResourceProvider(@Nonnull BinaryResourceFile file) {
+		this(findTable(file));
+	}
+
+	/**
+	 * @param table
+	 * 		Resource table to provide the resources of.
+	 */
+	public ArscResourceProvider(@Nonnull ResourceTableChunk table) {
+		List<String> foundNames = new ArrayList<>();
+		List<TypeChunk.Entry> attrEntries = new ArrayList<>();
+		int[] attrIds = new int[16];
+		long[] found = new long[64];
+		int foundCount = 0;
+		for (PackageChunk packageChunk : table.getPackages()) {
+			StringPoolChunk typePool = packageChunk.getTypeStringPool();
+			StringPoolChunk keyPool = packageChunk.getKeyStringPool();
+			int packageId = packageChunk.getId();
+			if (typePool == null || keyPool == null || (packageId & 0xFF) != packageId)
+				continue;
+
+			// Each configuration of a type has its own chunk, so the same entry is usually found repeatedly
+			BitSet[] seen = new BitSet[256];
+			for (TypeChunk typeChunk : packageChunk.getTypeChunks()) {
+				int typeId = typeChunk.getId();
+				if (typeId < 1 || typeId > 0xFF || typeId > typePool.getStringCount())
+					continue;
+				String typeName = typePool.getString(typeId - 1);
+				boolean isAttr = "attr".equals(typeName);
+				BitSet typeSeen = seen[typeId];
+				if (typeSeen == null)
+					typeSeen = seen[typeId] = new BitSet();
+				int entryCount = Math.min(typeChunk.getTotalEntryCount(), 0x10000);
+				for (int i = 0; i < entryCount; i++) {
+					if (typeSeen.get(i))
+						continue;
+					TypeChunk.Entry entry = typeChunk.getEntry(i);
+					if (entry == null || entry.keyIndex() < 0 || entry.keyIndex() >= keyPool.getStringCount())
+						continue;
+					typeSeen.set(i);
+
+					// Ids are sorted later along with the index of their name
+					int id = packageId << 24 | typeId << 16 | i;
+					if (foundCount == found.length)
+						found = Arrays.copyOf(found, foundCount * 2);
+					found[foundCount++] = ((long) id << 32) | foundNames.size();
+					foundNames.add(typeName + '/' + keyPool.getString(entry.keyIndex()));
+					if (isAttr && entry.isComplex()) {
+						if (attrEntries.size() == attrIds.length)
+							attrIds = Arrays.copyOf(attrIds, attrIds.length * 2);
+						attrIds[attrEntries.size()] = id;
+						attrEntries.add(entry);
+					}
+				}
+			}
+		}
+
+		Arrays.sort(found, 0, foundCount);
+		ids = new int[foundCount];
+		names = new String[foundCount];
+		for (int i = 0; i < foundCount; i++) {
+			ids[i] = (int) (found[i] >>> 32);
+			names[i] = foundNames.get((int) found[i]);
+		}
+
+		// Enum and flag tables are also sorted by the id of their attribute
+		long[] foundEnums = new long[attrEntries.size()];
+		long[] foundFlags = new long[attrEntries.size()];
+		List<ValueTable> foundEnumTables = new ArrayList<>();
+		List<FlagTable> foundFlagTables = new ArrayList<>();
+		for (int i = 0; i < attrEntries.size(); i++) {
+			TypeChunk.Entry entry = attrEntries.get(i);
+			int attrType = getAttrType(entry);
+			if ((attrType & TYPE_FLAGS) != 0) {
+				ValueTable values = readValueTable(entry);
+				if (values == null)
+					continue;
+				FlagTable flagTable = new FlagTable(values.values, values.names);
+				flags.putIfAbsent(entry.key(), flagTable);
+				foundFlags[foundFlagTables.size()] = ((long) attrIds[i] << 32) | foundFlagTables.size();
+				foundFlagTables.add(flagTable);
+			} else if ((attrType & TYPE_ENUM) != 0) {
+				ValueTable values = readValueTable(entry);
+				if (values == null)
+					continue;
+				ValueTable enumTable = values.sorted();
+				enums.putIfAbsent(entry.key(), enumTable);
+				foundEnums[foundEnumTables.size()] = ((long) attrIds[i] << 32) | foundEnumTables.size();
+				foundEnumTables.add(enumTable);
+			}
+		}
+		enumTables = new ValueTable[foundEnumTables.size()];
+		enumIds = sortById(foundEnums, foundEnumTables, enumTables);
+		flagTables = new FlagTable[foundFlagTables.size()];
+		flagIds = sortById(foundFlags, foundFlagTables, flagTables);
+	}
+
+	@Override
+	public boolean hasResName(int resId) {
+		return Arrays.binarySearch(ids, resId) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResName(int resId) {
+		int index = Arrays.binarySearch(ids, resId);
+		if (index < 0)
+			return null;
+		return names[index];
+	}
+
+	@Override
+	public boolean hasResFlag(@Nonnull String resName) {
+		return flags.containsKey(resName);
+	}
+
+	@Nullable
+	@Override
+	public String getResFlagNames(String resName, long mask) {
+		FlagTable table = flags.get(resName);
+		if (table == null)
+			return null;
+		return table.getFlagNames((int) mask);
+	}
+
+	@Override
+	public boolean hasResFlag(int attrResId) {
+		return Arrays.binarySearch(flagIds, attrResId) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResFlagNames(int attrResId, long mask) {
+		FlagTable table = getResFlagTable(attrResId);
+		if (table == null)
+			return null;
+		return table.getFlagNames((int) mask);
+	}
+
+	@Nullable
+	@Override
+	public FlagTable getResFlagTable(int attrResId) {
+		int index = Arrays.binarySearch(flagIds, attrResId);
+		if (index < 0)
+			return null;
+		return flagTables[index];
+	}
+
+	@Override
+	public boolean hasResEnum(@Nonnull String resName) {
+		return enums.containsKey(resName);
+	}
+
+	@Nullable
+	@Override
+	public String getResEnumName(String resName, long value) {
+		ValueTable table = enums.get(resName);
+		if (table == null)
+			return null;
+		return table.getName(value);
+	}
+
+	@Override
+	public boolean hasResEnum(int attrResId) {
+		return Arrays.binarySearch(enumIds, attrResId) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResEnumName(int attrResId, long value) {
+		int index = Arrays.binarySearch(enumIds, attrResId);
+		if (index < 0)
+			return null;
+		return enumTables[index].getName(value);
+	}
+
+	/**
+	 * @param entry
+	 * 		Complex entry of an {@code attr} resource.
+	 *
+	 * @return Types of values the attribute accepts.
+	 */
+	private static int getAttrType(@Nonnull TypeChunk.Entry entry) {
+		int attrType = 0;
+		for (int i = 0; i < entry.valueCount(); i++)
+			if (entry.valueKey(i) == ATTR_TYPE)
+				attrType = BinaryResourceValue.packedData(entry.packedValue(i));
+		return attrType;
+	}
+
+	/**
+	 * @param entry
+	 * 		Complex entry of an enum or flag {@code attr} resource.
+	 *
+	 * @return Values of the attribute in declaration order, or {@code null} if none of their names are known.
+	 */
+	@Nullable
+	private ValueTable readValueTable(@Nonnull TypeChunk.Entry entry) {
+		int valueCount = entry.valueCount();
+
+		// Other keys are the ids of the value names, such as 'id/vertical'
+		int[] values = new int[valueCount];
+		String[] valueNames = new String[valueCount];
+		int count = 0;
+		for (int i = 0; i < valueCount; i++) {
+			String name = getResName(entry.valueKey(i));
+			if (name == null)
+				continue;
+			values[count] = BinaryResourceValue.packedData(entry.packedValue(i));
+			valueNames[count] = name.substring(name.indexOf('/') + 1);
+			count++;
+		}
+		if (count == 0)
+			return null;
+
+		return new ValueTable(Arrays.copyOf(values, count), Arrays.copyOf(valueNames, count));
+	}
+
+	/**
+	 * @param keys
+	 * 		Attribute ids in the upper half of each key, and the index of their table in the lower half.
+	 * @param tables
+	 * 		Tables of the attributes.
+	 * @param sortedTables
+	 * 		Array to fill with the tables, in order of the ids of their attributes.
+	 * @param <T>
+	 * 		Table type.
+	 *
+	 * @return Sorted attribute ids.
+	 */
+	@Nonnull
+	private static <T> int[] sortById(@Nonnull long[] keys, @Nonnull List<T> tables, @Nonnull T[] sortedTables) {
+		Arrays.sort(keys, 0, tables.size());
+		int[] ids = new int[tables.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = (int) (keys[i] >>> 32);
+			sortedTables[i] = tables.get((int) keys[i]);
+		}
+		return ids;
+	}
+
+	@Nonnull
+	private static ResourceTableChunk findTable(@Nonnull BinaryResourceFile file) {
+		for (Chunk chunk : file.getChunks())
+			if (chunk instanceof ResourceTableChunk)
+				return (ResourceTableChunk) chunk;
+		throw new IllegalArgumentException("File does not contain a resource table");
+	}
+
+	/**
+	 * Names of the enum or flag values of an attribute.
+	 */
+	private static class ValueTable {
+		private final int[] values;
+		private final String[] names;
+
+		/**
+		 * @param values
+		 * 		Values.
+		 * @param names
+		 * 		Names, matching the order of the values.
+		 */
+		private ValueTable(@Nonnull int[] values, @Nonnull String[] names) {
+			this.values = values;
+			this.names = names;
+		}
+
+		/**
+		 * @return Table of the same values sorted by value, keeping only the first name of each value.
+		 */
+		@Nonnull
+		private ValueTable sorted() {
+			// Sorted along with the index of their name, so the first name of a value sorts first
+			long[] sorted = new long[values.length];
+			for (int i = 0; i < values.length; i++)
+				sorted[i] = ((long) values[i] << 32) | i;
+			Arrays.sort(sorted);
+			int count = 0;
+			int[] sortedValues = new int[values.length];
+			String[] sortedNames = new String[values.length];
+			for (long entry : sorted) {
+				int value = (int) (entry >>> 32);
+				if (count > 0 && sortedValues[count - 1] == value)
+					continue;
+				sortedValues[count] = value;
+				sortedNames[count] = names[(int) entry];
+				count++;
+			}
+			return new ValueTable(Arrays.copyOf(sortedValues, count), Arrays.copyOf(sortedNames, count));
+		}
+
+		/**
+		 * @param value
+		 * 		Enum value, looked up in a {@link #sorted() sorted} table.
+		 *
+		 * @return Name of the value, or {@code null} if the value has no name.
+		 */
+		@Nullable
+		private String getName(long value) {
+			if (value != (int) value)
+				return null;
+			int index = Arrays.binarySearch(values, (int) value);
+			return index < 0 ? null : names[index];
+		}
+	}
+}
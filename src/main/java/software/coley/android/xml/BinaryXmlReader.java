@@ -0,0 +1,348 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A forward-only pull reader over binary XML. Unlike {@link XmlDecoder#visitChunks(java.util.Map, XmlDecoder)}
+ * this does not build a chunk model of the document first. Chunks are read sequentially from the buffer
+ * as {@link #next()} is called, and element attributes are read from the buffer on access, so callers
+ * looking for a handful of elements can stop reading once they have been found.
+ * <p>
+ * The string pool is decoded on demand, so only strings that are accessed get decoded.
+ */
+public class BinaryXmlReader {
+	/** Offset in a node chunk where its type specific data starts, after the line number and comment. */
+	private static final int NODE_DATA_OFFSET = 16;
+	/** Size of an attribute, not counting its typed value. */
+	private static final int ATTRIBUTE_LOCAL_SIZE = 12;
+	private final ByteBuffer buffer;
+	private final int end;
+	private int position;
+	private Event event;
+	private int depth;
+	private StringPoolChunk stringPool;
+	private int resourceMapOffset;
+	private int resourceMapCount;
+	// Current event state
+	private int chunkOffset;
+	private int attributeCount;
+	private int[] attributeOffsets = new int[16];
+
+	/**
+	 * Events produced by {@link #next()}.
+	 */
+	public enum Event {
+		START_NAMESPACE,
+		END_NAMESPACE,
+		START_ELEMENT,
+		END_ELEMENT,
+		CDATA,
+		END_DOCUMENT
+	}
+
+	/**
+	 * @param data
+	 * 		Binary XML file contents.
+	 */
+	public BinaryXmlReader(@Nonnull byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * @param buffer
+	 * 		Buffer containing a binary XML file from its position to its limit.
+	 * 		The buffer's position is not modified, and its contents must not change while reading.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the buffer does not start with an XML chunk.
+	 */
+	public BinaryXmlReader(@Nonnull ByteBuffer buffer) {
+		this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (this.buffer.limit() < Chunk.METADATA_SIZE)
+			throw new IllegalArgumentException("Buffer is too small to contain binary XML");
+
+		// Obfuscated samples may rewrite the type-code of the XML chunk to be the null identifier.
+		short type = this.buffer.getShort(0);
+		if (type != Chunk.Type.XML.code() && type != Chunk.Type.NULL.code())
+			throw new IllegalArgumentException("Buffer does not start with an XML chunk: " + type);
+		position = this.buffer.getShort(2) & 0xFFFF;
+		end = (int) Math.min(this.buffer.limit(), Math.max(0L, this.buffer.getInt(4) & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * @return {@code true} when there are more events, {@code false} after {@link Event#END_DOCUMENT} was returned.
+	 */
+	public boolean hasNext() {
+		return event != Event.END_DOCUMENT;
+	}
+
+	/**
+	 * Advances to the next event. String pool and resource map chunks are consumed internally.
+	 *
+	 * @return The next event.
+	 *
+	 * @throws NoSuchElementException
+	 * 		When {@link Event#END_DOCUMENT} was already returned.
+	 */
+	@Nonnull
+	public Event next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		if (event == Event.END_ELEMENT)
+			depth--;
+		attributeCount = 0;
+		while (position + Chunk.METADATA_SIZE <= end) {
+			int offset = position;
+			short type = buffer.getShort(offset);
+			int headerSize = buffer.getShort(offset + 2) & 0xFFFF;
+			int size = buffer.getInt(offset + 4);
+			if (size < Chunk.METADATA_SIZE || size > end - offset)
+				break; // Malformed chunk, there is nothing more we can read
+			position += size;
+			chunkOffset = offset;
+			if (type == Chunk.Type.STRING_POOL.code()) {
+				ByteBuffer poolBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+				poolBuffer.position(offset);
+				stringPool = (StringPoolChunk) Chunk.newInstance(poolBuffer, true);
+			} else if (type == Chunk.Type.XML_RESOURCE_MAP.code()) {
+				resourceMapOffset = offset + headerSize;
+				resourceMapCount = Math.max(0, (size - headerSize) / 4);
+			} else if (type == Chunk.Type.XML_START_NAMESPACE.code()) {
+				return event = Event.START_NAMESPACE;
+			} else if (type == Chunk.Type.XML_END_NAMESPACE.code()) {
+				return event = Event.END_NAMESPACE;
+			} else if (type == Chunk.Type.XML_START_ELEMENT.code()) {
+				readAttributeOffsets(offset, headerSize);
+				depth++;
+				return event = Event.START_ELEMENT;
+			} else if (type == Chunk.Type.XML_END_ELEMENT.code()) {
+				return event = Event.END_ELEMENT;
+			} else if (type == Chunk.Type.XML_CDATA.code()) {
+				return event = Event.CDATA;
+			}
+		}
+		position = end;
+		return event = Event.END_DOCUMENT;
+	}
+
+	private void readAttributeOffsets(int offset, int headerSize) {
+		int data = offset + NODE_DATA_OFFSET;
+		int attributeOffset = offset + headerSize + (buffer.getShort(data + 8) & 0xFFFF);
+		int count = buffer.getShort(data + 12) & 0xFFFF;
+		if (attributeOffsets.length < count)
+			attributeOffsets = Arrays.copyOf(attributeOffsets, Math.max(count, attributeOffsets.length * 2));
+
+		// Attributes are stepped over by their declared value size, which obfuscators may tamper with.
+		for (int i = 0; i < count; i++) {
+			attributeOffsets[i] = attributeOffset;
+			attributeOffset += ATTRIBUTE_LOCAL_SIZE + (buffer.getShort(attributeOffset + ATTRIBUTE_LOCAL_SIZE) & 0xFFFF);
+		}
+		attributeCount = count;
+	}
+
+	/**
+	 * @return Current event, or {@code null} if {@link #next()} has not been called yet.
+	 */
+	@Nullable
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return Element depth of the current event, where the root element is at depth 1.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return Line number in the original source of the current event.
+	 */
+	public int getLineNumber() {
+		requireNode();
+		return buffer.getInt(chunkOffset + 8);
+	}
+
+	/**
+	 * @return Namespace URI of the current element, or the URI of the current namespace event.
+	 * Empty if not present.
+	 */
+	@Nonnull
+	public String getNamespace() {
+		requireNode();
+		if (event == Event.START_NAMESPACE || event == Event.END_NAMESPACE)
+			return getString(buffer.getInt(chunkOffset + NODE_DATA_OFFSET + 4));
+		requireElement();
+		return getString(buffer.getInt(chunkOffset + NODE_DATA_OFFSET));
+	}
+
+	/**
+	 * @return Name of the current element.
+	 */
+	@Nonnull
+	public String getName() {
+		requireElement();
+		return getString(buffer.getInt(chunkOffset + NODE_DATA_OFFSET + 4));
+	}
+
+	/**
+	 * @return Prefix of the current namespace event.
+	 */
+	@Nonnull
+	public String getPrefix() {
+		if (event != Event.START_NAMESPACE && event != Event.END_NAMESPACE)
+			throw new IllegalStateException("Not a namespace event: " + event);
+		return getString(buffer.getInt(chunkOffset + NODE_DATA_OFFSET));
+	}
+
+	/**
+	 * @return Raw character data of the current CDATA event.
+	 */
+	@Nonnull
+	public String getText() {
+		if (event != Event.CDATA)
+			throw new IllegalStateException("Not a CDATA event: " + event);
+		return getString(buffer.getInt(chunkOffset + NODE_DATA_OFFSET));
+	}
+
+	/**
+	 * @return Number of attributes of the current element, or {@code 0} for other events.
+	 */
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Namespace URI of the attribute, empty if not present.
+	 */
+	@Nonnull
+	public String getAttributeNamespace(int index) {
+		return getString(buffer.getInt(attributeOffset(index)));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Name of the attribute. Can be empty, in which case the name can be looked up
+	 * with {@link #getAttributeResourceId(int)}.
+	 */
+	@Nonnull
+	public String getAttributeName(int index) {
+		return getString(getAttributeNameIndex(index));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return String pool index of the attribute name.
+	 */
+	public int getAttributeNameIndex(int index) {
+		return buffer.getInt(attributeOffset(index) + 4);
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Resource id of the attribute, from the resource map. {@code 0} if the attribute has none.
+	 */
+	public int getAttributeResourceId(int index) {
+		int nameIndex = getAttributeNameIndex(index);
+		if (nameIndex < 0 || nameIndex >= resourceMapCount)
+			return 0;
+		return buffer.getInt(resourceMapOffset + nameIndex * 4);
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Raw character value of the attribute, empty if not present.
+	 */
+	@Nonnull
+	public String getAttributeRawValue(int index) {
+		return getString(buffer.getInt(attributeOffset(index) + 8));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Type of the attribute's typed value.
+	 */
+	@Nonnull
+	public BinaryResourceValue.Type getAttributeValueType(int index) {
+		return BinaryResourceValue.Type.fromCode(buffer.get(attributeOffset(index) + ATTRIBUTE_LOCAL_SIZE + 3));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Data of the attribute's typed value. Interpretation depends on {@link #getAttributeValueType(int)}.
+	 */
+	public int getAttributeValueData(int index) {
+		return buffer.getInt(attributeOffset(index) + ATTRIBUTE_LOCAL_SIZE + 4);
+	}
+
+	/**
+	 * @param name
+	 * 		Attribute name, without namespace prefix.
+	 *
+	 * @return Index of the first attribute of the current element with the given name, or {@code -1} if none.
+	 */
+	public int getAttributeIndex(@Nonnull String name) {
+		for (int i = 0; i < attributeCount; i++)
+			if (name.equals(getAttributeName(i)))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @param index
+	 * 		String pool index.
+	 *
+	 * @return String at the given index, or an empty string for {@code -1}.
+	 *
+	 * @throws IllegalStateException
+	 * 		When no string pool has been read yet.
+	 */
+	@Nonnull
+	public String getString(int index) {
+		if (index == -1)
+			return "";
+		if (stringPool == null)
+			throw new IllegalStateException("Binary XML did not contain a string pool");
+		return stringPool.getString(index);
+	}
+
+	private int attributeOffset(int index) {
+		if (index < 0 || index >= attributeCount)
+			throw new IndexOutOfBoundsException("Attribute index " + index + ", count " + attributeCount);
+		return attributeOffsets[index];
+	}
+
+	private void requireNode() {
+		if (event == null || event == Event.END_DOCUMENT)
+			throw new IllegalStateException("Not positioned on a node: " + event);
+	}
+
+	private void requireElement() {
+		if (event != Event.START_ELEMENT && event != Event.END_ELEMENT)
+			throw new IllegalStateException("Not an element event: " + event);
+	}
+}
@@ -54,6 +54,26 @@ public class DelegatingAndroidResourceProvider implements AndroidResourceProvide
 		return delegate.getResFlagNames(resName, mask);
 	}
 
+	@Override
+	public boolean hasResFlag(int attrResId) {
+		if (delegate == null) return false;
+		return delegate.hasResFlag(attrResId);
+	}
+
+	@Nullable
+	@Override
+	public String getResFlagNames(int attrResId, long mask) {
+		if (delegate == null) return null;
+		return delegate.getResFlagNames(attrResId, mask);
+	}
+
+	@Nullable
+	@Override
+	public FlagTable getResFlagTable(int attrResId) {
+		if (delegate == null) return null;
+		return delegate.getResFlagTable(attrResId);
+	}
+
 	@Override
 	public boolean hasResEnum(@Nonnull String resName) {
 		if (delegate == null) return false;
@@ -66,4 +86,24 @@ public class DelegatingAndroidResourceProvider implements AndroidResourceProvide
 		if (delegate == null) return null;
 		return delegate.getResEnumName(resName, value);
 	}
+
+	@Override
+	public boolean hasResEnum(int attrResId) {
+		if (delegate == null) return false;
+		return delegate.hasResEnum(attrResId);
+	}
+
+	@Nullable
+	@Override
+	public String getResEnumName(int attrResId, long value) {
+		if (delegate == null) return null;
+		return delegate.getResEnumName(attrResId, value);
+	}
+
+	@Nullable
+	@Override
+	public String getAttrName(int attrResId) {
+		if (delegate == null) return null;
+		return delegate.getAttrName(attrResId);
+	}
 }
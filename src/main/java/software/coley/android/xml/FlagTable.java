@@ -0,0 +1,146 @@
+package software.coley.android.xml;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Compiled flag values of a single attribute, which decomposes values into the names of the flags making them up.
+ * <p>
+ * Values are decomposed greedily, preferring flags with more bits set. For instance a {@code gravity} of
+ * {@code 0x11} is {@code center} rather than {@code center_vertical|center_horizontal}, and flags sharing a value
+ * are only named once. Decomposed names are memoized per value, as attributes tend to use the same few values.
+ * <p>
+ * Instances are safe to share between threads.
+ */
+public final class FlagTable {
+	private static final int MEMO_SIZE = 64;
+	/** Flag values, sorted by bit count in descending order, then by value. */
+	private final int[] masks;
+	/** Names of the flags in {@link #masks}. */
+	private final String[] names;
+	/** Name of the flag with a value of zero, if any. */
+	private final String zeroName;
+	/** Direct-mapped cache of decomposed values. Written racily, which is safe as entries are immutable. */
+	private final Memo[] memo = new Memo[MEMO_SIZE];
+
+	/**
+	 * @param values
+	 * 		Flag values.
+	 * @param names
+	 * 		Flag names, matching the order of the values.
+	 */
+	public FlagTable(@Nonnull int[] values, @Nonnull String[] names) {
+		if (values.length != names.length)
+			throw new IllegalArgumentException("Mismatched count of flag values and names");
+
+		int count = 0;
+		String zeroName = null;
+		int[] masks = new int[values.length];
+		String[] maskNames = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			int value = values[i];
+			if (value == 0) {
+				if (zeroName == null)
+					zeroName = names[i];
+				continue;
+			}
+
+			// Stable insertion sort, as attributes rarely have more than a few dozen flags
+			int j = count - 1;
+			for (; j >= 0 && compare(masks[j], value) > 0; j--) {
+				masks[j + 1] = masks[j];
+				maskNames[j + 1] = maskNames[j];
+			}
+			masks[j + 1] = value;
+			maskNames[j + 1] = names[i];
+			count++;
+		}
+		this.masks = count == masks.length ? masks : Arrays.copyOf(masks, count);
+		this.names = count == maskNames.length ? maskNames : Arrays.copyOf(maskNames, count);
+		this.zeroName = zeroName;
+	}
+
+	/**
+	 * @return Number of flags, excluding a flag with a value of zero.
+	 */
+	public int size() {
+		return masks.length;
+	}
+
+	/**
+	 * @param value
+	 * 		Value to decompose.
+	 *
+	 * @return Flag names <i>(Separated by {@code |}, in order of their values)</i> making up the value,
+	 * or {@code null} if some bits of the value do not belong to any flag.
+	 */
+	@Nullable
+	public String getFlagNames(int value) {
+		int slot = (value ^ (value >>> 7) ^ (value >>> 16)) & (MEMO_SIZE - 1);
+		Memo entry = memo[slot];
+		if (entry != null && entry.value == value)
+			return entry.names;
+
+		String names = decompose(value);
+		memo[slot] = new Memo(value, names);
+		return names;
+	}
+
+	@Nullable
+	private String decompose(int value) {
+		if (value == 0)
+			return zeroName;
+
+		// Pick flags covering bits not covered yet, with the widest flags first
+		int remaining = value;
+		int count = 0;
+		int[] picked = new int[Math.min(masks.length, Integer.bitCount(value))];
+		for (int i = 0; i < masks.length && remaining != 0; i++) {
+			int mask = masks[i];
+			if ((value & mask) != mask || (remaining & mask) == 0)
+				continue;
+			remaining &= ~mask;
+
+			// Keep the picked flags ordered by value, so the output does not depend on how flags were declared
+			int j = count - 1;
+			for (; j >= 0 && Integer.compareUnsigned(masks[picked[j]], mask) > 0; j--)
+				picked[j + 1] = picked[j];
+			picked[j + 1] = i;
+			count++;
+		}
+		if (remaining != 0)
+			return null;
+
+		StringBuilder sb = new StringBuilder(names[picked[0]]);
+		for (int i = 1; i < count; i++)
+			sb.append('|').append(names[picked[i]]);
+		return sb.toString();
+	}
+
+	/**
+	 * @param a
+	 * 		Some flag value.
+	 * @param b
+	 * 		Another flag value.
+	 *
+	 * @return Order of the values when decomposing, which is by bit count in descending order, then by value.
+	 */
+	static int compare(int a, int b) {
+		int cmp = Integer.compare(Integer.bitCount(b), Integer.bitCount(a));
+		return cmp != 0 ? cmp : Integer.compareUnsigned(a, b);
+	}
+
+	/**
+	 * Decomposed names of a value.
+	 */
+	private static final class Memo {
+		private final int value;
+		private final String names;
+
+		private Memo(int value, @Nullable String names) {
+			this.value = value;
+			this.names = names;
+		}
+	}
+}
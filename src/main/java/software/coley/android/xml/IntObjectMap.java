@@ -0,0 +1,142 @@
+package software.coley.android.xml;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map of {@code int} keys to values.
+ *
+ * @param <V>
+ * 		Value type.
+ */
+interface IntObjectMap<V> {
+	/**
+	 * @param key
+	 * 		Key to look up.
+	 *
+	 * @return Value of the key, or {@code null} if the key has no value.
+	 */
+	@Nullable
+	V get(int key);
+
+	/**
+	 * @param key
+	 * 		Key to set the value of.
+	 * @param value
+	 * 		Value of the key.
+	 */
+	void put(int key, @Nonnull V value);
+
+	/**
+	 * Removes all keys.
+	 */
+	void clear();
+
+	/**
+	 * @param concurrent
+	 * 		{@code true} for a map which can be used by multiple threads at once.
+	 * @param <V>
+	 * 		Value type.
+	 *
+	 * @return New empty map.
+	 */
+	@Nonnull
+	static <V> IntObjectMap<V> create(boolean concurrent) {
+		return concurrent ? new Concurrent<>() : new OpenAddressing<>();
+	}
+
+	/**
+	 * Open addressing map, which avoids boxing keys like a {@code HashMap<Integer, V>}. Not thread safe.
+	 *
+	 * @param <V>
+	 * 		Value type.
+	 */
+	final class OpenAddressing<V> implements IntObjectMap<V> {
+		private int[] keys = new int[16];
+		private Object[] values = new Object[16];
+		private int size;
+
+		@Nullable
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(int key) {
+			int mask = keys.length - 1;
+			for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+				Object value = values[i];
+				if (value == null || keys[i] == key)
+					return (V) value;
+			}
+		}
+
+		@Override
+		public void put(int key, @Nonnull V value) {
+			if (insert(keys, values, key, value))
+				size++;
+			if (size * 2 > keys.length)
+				grow();
+		}
+
+		@Override
+		public void clear() {
+			Arrays.fill(values, null);
+			size = 0;
+		}
+
+		private void grow() {
+			int[] newKeys = new int[keys.length * 2];
+			Object[] newValues = new Object[values.length * 2];
+			for (int i = 0; i < keys.length; i++)
+				if (values[i] != null)
+					insert(newKeys, newValues, keys[i], values[i]);
+			keys = newKeys;
+			values = newValues;
+		}
+
+		private static boolean insert(@Nonnull int[] keys, @Nonnull Object[] values, int key, @Nonnull Object value) {
+			int mask = keys.length - 1;
+			for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+				if (values[i] == null) {
+					keys[i] = key;
+					values[i] = value;
+					return true;
+				} else if (keys[i] == key) {
+					values[i] = value;
+					return false;
+				}
+			}
+		}
+
+		private static int mix(int key) {
+			int hash = key * 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	/**
+	 * Thread safe map, which boxes keys.
+	 *
+	 * @param <V>
+	 * 		Value type.
+	 */
+	final class Concurrent<V> implements IntObjectMap<V> {
+		private final ConcurrentHashMap<Integer, V> map = new ConcurrentHashMap<>();
+
+		@Nullable
+		@Override
+		public V get(int key) {
+			return map.get(key);
+		}
+
+		@Override
+		public void put(int key, @Nonnull V value) {
+			map.put(key, value);
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package software.coley.android.xml;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the resource, flag and enum names an {@link XmlDecoder} looks up from its resource providers.
+ * Documents tend to reference the same few resources many times, which then only need to be looked up once.
+ * <p>
+ * The names of flag and enum values are memoized in a bounded cache per attribute, as documents may hold
+ * any number of distinct values.
+ * <p>
+ * Each decoder has its own cache by default, which it clears between documents. A cache can be shared between decoders
+ * with {@link XmlDecoder#XmlDecoder(AndroidResourceProvider, AndroidResourceProvider, Appendable, ResourceNameCache)},
+ * but only between decoders using the same providers. Only {@link #ResourceNameCache(boolean) concurrent} caches
+ * can be used by multiple threads at once.
+ */
+public class ResourceNameCache {
+	/** Marks a looked up value as not present, as {@code null} marks a value that has not been looked up. */
+	private static final String MISSING = new String();
+	/** Number of value names memoized per attribute. */
+	private static final int MEMO_SIZE = 64;
+	private final IntObjectMap<String> primaryNames;
+	private final IntObjectMap<String> secondaryNames;
+	private final Map<String, AttrValues> valuesByName;
+	private final IntObjectMap<AttrValues> valuesById;
+
+	/**
+	 * Creates a cache for use by one thread at a time.
+	 */
+	public ResourceNameCache() {
+		this(false);
+	}
+
+	/**
+	 * @param concurrent
+	 * 		{@code true} for a cache which can be used by multiple threads at once, such as by the decoders of
+	 * 		an {@link XmlBatchDecoder}. Concurrent caches box their keys, so lookups are slower when not shared.
+	 * 		Threads racing to look up the same name may each look it up from the provider.
+	 */
+	public ResourceNameCache(boolean concurrent) {
+		primaryNames = IntObjectMap.create(concurrent);
+		secondaryNames = IntObjectMap.create(concurrent);
+		valuesByName = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+		valuesById = IntObjectMap.create(concurrent);
+	}
+
+	/**
+	 * Removes all memoized names. Call this if the providers of the decoders using this cache change their contents.
+	 */
+	public void clear() {
+		primaryNames.clear();
+		secondaryNames.clear();
+		valuesByName.clear();
+		valuesById.clear();
+	}
+
+	/**
+	 * @param provider
+	 * 		Provider to look up the name from.
+	 * @param resId
+	 * 		Resource ID.
+	 *
+	 * @return Name from the primary provider, or {@code null} if not present.
+	 */
+	@Nullable
+	String getPrimaryResName(@Nonnull SplitAndroidResourceProvider provider, int resId) {
+		return getResName(primaryNames, provider.getPrimary(), resId);
+	}
+
+	/**
+	 * @param provider
+	 * 		Provider to look up the name from.
+	 * @param resId
+	 * 		Resource ID.
+	 *
+	 * @return Name from the secondary provider, or {@code null} if not present.
+	 */
+	@Nullable
+	String getSecondaryResName(@Nonnull SplitAndroidResourceProvider provider, int resId) {
+		return getResName(secondaryNames, provider.getSecondary(), resId);
+	}
+
+	/**
+	 * @param provider
+	 * 		Provider to look up the name from.
+	 * @param resName
+	 * 		Name of the attribute resource holding the value.
+	 * @param value
+	 * 		Integer value.
+	 *
+	 * @return Flag names or enum name of the value, or {@code null} if the attribute is not a flag or enum,
+	 * or the value has no name.
+	 */
+	@Nullable
+	String getValueName(@Nonnull AndroidResourceProvider provider, @Nonnull String resName, int value) {
+		AttrValues values = valuesByName.get(resName);
+		if (values == null) {
+			if (provider.hasResFlag(resName))
+				values = new AttrValues(ValueKind.FLAG, null);
+			else if (provider.hasResEnum(resName))
+				values = new AttrValues(ValueKind.ENUM, null);
+			else
+				values = AttrValues.NONE;
+			valuesByName.put(resName, values);
+		}
+		if (values.kind == ValueKind.NONE)
+			return null;
+
+		Memo entry = values.getMemo(value);
+		if (entry != null)
+			return entry.name;
+
+		String name = values.kind == ValueKind.FLAG ?
+				provider.getResFlagNames(resName, value) : provider.getResEnumName(resName, value);
+		values.putMemo(value, name);
+		return name;
+	}
+
+	/**
+	 * @param provider
+	 * 		Provider to look up the name from.
+	 * @param attrResId
+	 * 		Resource ID of the attribute holding the value.
+	 * @param value
+	 * 		Integer value.
+	 *
+	 * @return Flag names or enum name of the value, or {@code null} if the attribute is not a flag or enum,
+	 * or the value has no name.
+	 */
+	@Nullable
+	String getValueName(@Nonnull AndroidResourceProvider provider, int attrResId, int value) {
+		AttrValues values = valuesById.get(attrResId);
+		if (values == null) {
+			FlagTable table = provider.getResFlagTable(attrResId);
+			if (table != null)
+				values = new AttrValues(ValueKind.FLAG_TABLE, table);
+			else if (provider.hasResFlag(attrResId))
+				values = new AttrValues(ValueKind.FLAG, null);
+			else if (provider.hasResEnum(attrResId))
+				values = new AttrValues(ValueKind.ENUM, null);
+			else
+				values = AttrValues.NONE;
+			valuesById.put(attrResId, values);
+		}
+		switch (values.kind) {
+			case NONE:
+				return null;
+			case FLAG_TABLE:
+				// Tables memoize their own names
+				return values.table.getFlagNames(value);
+			default:
+				break;
+		}
+
+		Memo entry = values.getMemo(value);
+		if (entry != null)
+			return entry.name;
+
+		String name = values.kind == ValueKind.FLAG ?
+				provider.getResFlagNames(attrResId, value) : provider.getResEnumName(attrResId, value);
+		values.putMemo(value, name);
+		return name;
+	}
+
+	@Nullable
+	private static String getResName(@Nonnull IntObjectMap<String> names, @Nonnull AndroidResourceProvider provider, int resId) {
+		String name = names.get(resId);
+		if (name == null) {
+			name = provider.getResName(resId);
+			if (name == null)
+				name = MISSING;
+			names.put(resId, name);
+		}
+		return name == MISSING ? null : name;
+	}
+
+	/**
+	 * Kind of the values of an attribute, with the names of its most recently looked up values.
+	 */
+	private static final class AttrValues {
+		private static final AttrValues NONE = new AttrValues(ValueKind.NONE, null);
+		private final ValueKind kind;
+		private final FlagTable table;
+		/**
+		 * Direct-mapped cache of value names, bounded so that documents with many distinct values do not grow it.
+		 * Written racily, which is safe as entries are immutable.
+		 */
+		private final Memo[] memo;
+
+		private AttrValues(@Nonnull ValueKind kind, @Nullable FlagTable table) {
+			this.kind = kind;
+			this.table = table;
+			memo = kind == ValueKind.FLAG || kind == ValueKind.ENUM ? new Memo[MEMO_SIZE] : null;
+		}
+
+		@Nullable
+		private Memo getMemo(int value) {
+			Memo entry = memo[slot(value)];
+			return entry != null && entry.value == value ? entry : null;
+		}
+
+		private void putMemo(int value, @Nullable String name) {
+			memo[slot(value)] = new Memo(value, name);
+		}
+
+		private static int slot(int value) {
+			return (value ^ (value >>> 7) ^ (value >>> 16)) & (MEMO_SIZE - 1);
+		}
+	}
+
+	/**
+	 * Name of a value, or {@code null} if the value has no name.
+	 */
+	private static final class Memo {
+		private final int value;
+		private final String name;
+
+		private Memo(int value, @Nullable String name) {
+			this.value = value;
+			this.name = name;
+		}
+	}
+
+	private enum ValueKind {
+		NONE,
+		FLAG,
+		FLAG_TABLE,
+		ENUM
+	}
+}
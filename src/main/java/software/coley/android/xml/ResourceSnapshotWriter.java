@@ -0,0 +1,305 @@
+package software.coley.android.xml;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects resource names, enums and flags, and writes them as a snapshot which
+ * {@link SnapshotResourceProvider} can load without parsing. Snapshots are meant to be generated once,
+ * such as once per Android API level for the framework resources, and then loaded many times.
+ * <p>
+ * A snapshot is a little-endian file made of:
+ * <ol>
+ *     <li>A header, holding a magic number, the format version, the API level and the location of the sections.</li>
+ *     <li>Resource name records of {@code [id, name hash, name]}, sorted by id.</li>
+ *     <li>A hash index of the resource name records, keyed by name.</li>
+ *     <li>Attribute records of {@code [name hash, name, kind, value count, values]} for attributes with
+ *     enum or flag values.</li>
+ *     <li>A hash index of the attribute records, keyed by name.</li>
+ *     <li>Attribute id records of {@code [id, attribute record]}, sorted by id, for the attributes whose
+ *     {@code attr/} resource name was added with an id.</li>
+ *     <li>Value records of {@code [value, name]}. The values of a flag attribute are sorted in the order
+ *     {@link FlagTable} decomposes values in, so a table can be created from them without sorting.</li>
+ *     <li>A pool of UTF-8 strings, each prefixed by its unsigned 2-byte length, which all names point into.</li>
+ * </ol>
+ * The hash indices are open addressing tables of record indices plus one, probed linearly from
+ * {@link String#hashCode()} of the name.
+ */
+public class ResourceSnapshotWriter {
+	static final int MAGIC = 0x4E535241; // "ARSN"
+	static final int VERSION = 3;
+	static final int HEADER_SIZE = 15 * 4;
+	static final int NAME_RECORD_SIZE = 3 * 4;
+	static final int ATTR_RECORD_SIZE = 5 * 4;
+	static final int ATTR_ID_RECORD_SIZE = 2 * 4;
+	static final int VALUE_RECORD_SIZE = 8 + 4;
+	static final int KIND_ENUM = 1;
+	static final int KIND_FLAG = 2;
+	private static final int[] NO_IDS = new int[0];
+	private final int apiLevel;
+	private final Map<Integer, String> names = new TreeMap<>();
+	private final Map<String, List<Value>> enums = new LinkedHashMap<>();
+	private final Map<String, List<Value>> flags = new LinkedHashMap<>();
+
+	/**
+	 * @param apiLevel
+	 * 		Android API level of the resources, or {@code 0} if not applicable.
+	 */
+	public ResourceSnapshotWriter(int apiLevel) {
+		this.apiLevel = apiLevel;
+	}
+
+	/**
+	 * @param resId
+	 * 		Resource ID.
+	 * @param resName
+	 * 		Name of the resource, such as {@code attr/layout_width}. Replaces any prior name of the resource.
+	 *
+	 * @return This writer.
+	 */
+	@Nonnull
+	public ResourceSnapshotWriter addName(int resId, @Nonnull String resName) {
+		names.put(resId, resName);
+		return this;
+	}
+
+	/**
+	 * @param resName
+	 * 		Name of the enum attribute, without the {@code attr/} prefix.
+	 * 		The attribute is also keyed by the id its {@code attr/} resource name is {@link #addName added} with.
+	 * @param enumName
+	 * 		Name of the enum value.
+	 * @param value
+	 * 		Enum value.
+	 *
+	 * @return This writer.
+	 */
+	@Nonnull
+	public ResourceSnapshotWriter addEnum(@Nonnull String resName, @Nonnull String enumName, long value) {
+		enums.computeIfAbsent(resName, n -> new ArrayList<>()).add(new Value(enumName, value));
+		return this;
+	}
+
+	/**
+	 * @param resName
+	 * 		Name of the flag attribute, without the {@code attr/} prefix.
+	 * 		The attribute is also keyed by the id its {@code attr/} resource name is {@link #addName added} with.
+	 * @param flagName
+	 * 		Name of the flag.
+	 * @param mask
+	 * 		Flag value mask.
+	 *
+	 * @return This writer.
+	 */
+	@Nonnull
+	public ResourceSnapshotWriter addFlag(@Nonnull String resName, @Nonnull String flagName, long mask) {
+		flags.computeIfAbsent(resName, n -> new ArrayList<>()).add(new Value(flagName, mask));
+		return this;
+	}
+
+	/**
+	 * @param path
+	 * 		Path to write the snapshot to.
+	 *
+	 * @throws IOException
+	 * 		When the file cannot be written.
+	 */
+	public void write(@Nonnull Path path) throws IOException {
+		Files.write(path, toByteArray());
+	}
+
+	/**
+	 * @param out
+	 * 		Stream to write the snapshot to.
+	 *
+	 * @throws IOException
+	 * 		When the stream cannot be written to.
+	 */
+	public void write(@Nonnull OutputStream out) throws IOException {
+		out.write(toByteArray());
+	}
+
+	/**
+	 * @return Snapshot of the added resources.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When a name is too long to be stored.
+	 */
+	@Nonnull
+	public byte[] toByteArray() {
+		StringPool strings = new StringPool();
+
+		// Resource names, sorted by id
+		ByteBuffer nameTable = allocate(names.size() * NAME_RECORD_SIZE);
+		List<String> nameKeys = new ArrayList<>(names.size());
+		for (Map.Entry<Integer, String> entry : names.entrySet()) {
+			String name = entry.getValue();
+			nameTable.putInt(entry.getKey()).putInt(name.hashCode()).putInt(strings.offset(name));
+			nameKeys.add(name);
+		}
+		ByteBuffer nameIndex = index(nameKeys);
+
+		// Ids of the attribute names, which attribute records are also keyed by
+		Map<String, int[]> attrIds = new HashMap<>();
+		for (Map.Entry<Integer, String> entry : names.entrySet()) {
+			String name = entry.getValue();
+			if (name.startsWith("attr/"))
+				attrIds.merge(name.substring(5), new int[]{entry.getKey()}, ResourceSnapshotWriter::concat);
+		}
+
+		// Enum and flag attributes, with their values
+		long[] attrIdRecords = new long[16];
+		int attrIdCount = 0;
+		List<String> attrKeys = new ArrayList<>(enums.size() + flags.size());
+		ByteBuffer attrTable = allocate((enums.size() + flags.size()) * ATTR_RECORD_SIZE);
+		int valueCount = 0;
+		for (List<Value> values : enums.values())
+			valueCount += values.size();
+		for (List<Value> values : flags.values())
+			valueCount += values.size();
+		ByteBuffer valueTable = allocate(valueCount * VALUE_RECORD_SIZE);
+		for (int kind = KIND_ENUM; kind <= KIND_FLAG; kind++) {
+			for (Map.Entry<String, List<Value>> entry : (kind == KIND_ENUM ? enums : flags).entrySet()) {
+				String name = entry.getKey();
+				List<Value> values = new ArrayList<>(entry.getValue());
+				if (kind == KIND_FLAG)
+					values.sort((a, b) -> FlagTable.compare((int) a.value, (int) b.value));
+				attrTable.putInt(name.hashCode()).putInt(strings.offset(name)).putInt(kind)
+						.putInt(values.size()).putInt(valueTable.position() / VALUE_RECORD_SIZE);
+				for (Value value : values)
+					valueTable.putLong(value.value).putInt(strings.offset(value.name));
+				for (int id : attrIds.getOrDefault(name, NO_IDS)) {
+					if (attrIdCount == attrIdRecords.length)
+						attrIdRecords = Arrays.copyOf(attrIdRecords, attrIdCount * 2);
+					attrIdRecords[attrIdCount++] = ((long) id << 32) | attrKeys.size();
+				}
+				attrKeys.add(name);
+			}
+		}
+		ByteBuffer attrIndex = index(attrKeys);
+		Arrays.sort(attrIdRecords, 0, attrIdCount);
+		ByteBuffer attrIdTable = allocate(attrIdCount * ATTR_ID_RECORD_SIZE);
+		for (int i = 0; i < attrIdCount; i++)
+			attrIdTable.putInt((int) (attrIdRecords[i] >>> 32)).putInt((int) attrIdRecords[i]);
+
+		// Lay out the sections after the header
+		int nameTableOffset = HEADER_SIZE;
+		int nameIndexOffset = nameTableOffset + nameTable.capacity();
+		int attrTableOffset = nameIndexOffset + nameIndex.capacity();
+		int attrIndexOffset = attrTableOffset + attrTable.capacity();
+		int attrIdTableOffset = attrIndexOffset + attrIndex.capacity();
+		int valueTableOffset = attrIdTableOffset + attrIdTable.capacity();
+		int stringsOffset = valueTableOffset + valueTable.capacity();
+		byte[] stringData = strings.toByteArray();
+		ByteBuffer out = allocate(stringsOffset + stringData.length);
+		out.putInt(MAGIC)
+				.putInt(VERSION)
+				.putInt(apiLevel)
+				.putInt(nameKeys.size())
+				.putInt(nameTableOffset)
+				.putInt(nameIndexOffset)
+				.putInt(nameIndex.capacity() / 4)
+				.putInt(attrKeys.size())
+				.putInt(attrTableOffset)
+				.putInt(attrIndexOffset)
+				.putInt(attrIndex.capacity() / 4)
+				.putInt(attrIdCount)
+				.putInt(attrIdTableOffset)
+				.putInt(valueTableOffset)
+				.putInt(stringsOffset);
+		out.put(nameTable.array())
+				.put(nameIndex.array())
+				.put(attrTable.array())
+				.put(attrIndex.array())
+				.put(attrIdTable.array())
+				.put(valueTable.array())
+				.put(stringData);
+		return out.array();
+	}
+
+	/**
+	 * @param keys
+	 * 		Names of the records to index, in record order.
+	 *
+	 * @return Open addressing table of record indices plus one, at most half full.
+	 */
+	@Nonnull
+	private static ByteBuffer index(@Nonnull List<String> keys) {
+		int size = Integer.highestOneBit(Math.max(1, keys.size()) * 2 - 1) << 1;
+		int mask = size - 1;
+		ByteBuffer index = allocate(size * 4);
+		for (int i = 0; i < keys.size(); i++) {
+			int slot = keys.get(i).hashCode() & mask;
+			while (index.getInt(slot * 4) != 0)
+				slot = (slot + 1) & mask;
+			index.putInt(slot * 4, i + 1);
+		}
+		return index;
+	}
+
+	@Nonnull
+	private static int[] concat(@Nonnull int[] a, @Nonnull int[] b) {
+		int[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+
+	@Nonnull
+	private static ByteBuffer allocate(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static class Value {
+		private final String name;
+		private final long value;
+
+		private Value(@Nonnull String name, long value) {
+			this.name = name;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Deduplicated pool of length prefixed UTF-8 strings.
+	 */
+	private static class StringPool {
+		private final Map<String, Integer> offsets = new HashMap<>();
+		private final List<byte[]> strings = new ArrayList<>();
+		private int size;
+
+		private int offset(@Nonnull String string) {
+			Integer offset = offsets.get(string);
+			if (offset == null) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				if (bytes.length > 0xFFFF)
+					throw new IllegalArgumentException("Name is too long for a snapshot: " + string.substring(0, 64));
+				offset = size;
+				offsets.put(string, offset);
+				strings.add(bytes);
+				size += 2 + bytes.length;
+			}
+			return offset;
+		}
+
+		@Nonnull
+		private byte[] toByteArray() {
+			ByteBuffer buffer = allocate(size);
+			for (byte[] string : strings)
+				buffer.putShort((short) string.length).put(string);
+			return buffer.array();
+		}
+	}
+}
@@ -0,0 +1,395 @@
+package software.coley.android.xml;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static software.coley.android.xml.ResourceSnapshotWriter.*;
+
+/**
+ * Read-only {@link AndroidResourceProvider} backed by a snapshot written by {@link ResourceSnapshotWriter}.
+ * Lookups read the snapshot in place, so loading a memory-mapped snapshot with {@link #open(Path)} does not
+ * depend on the number of resources in it. Resource and attribute names are decoded when first looked up,
+ * and attributes looked up by resource id are found without decoding or hashing their names.
+ * <p>
+ * Instances are safe to share between threads.
+ */
+public class SnapshotResourceProvider implements AndroidResourceProvider {
+	private final ByteBuffer buffer;
+	private final int apiLevel;
+	private final int nameCount;
+	private final int nameTableOffset;
+	private final int nameIndexOffset;
+	private final int nameIndexMask;
+	private final int attrCount;
+	private final int attrTableOffset;
+	private final int attrIndexOffset;
+	private final int attrIndexMask;
+	private final int attrIdCount;
+	private final int attrIdTableOffset;
+	private final int valueTableOffset;
+	private final int stringsOffset;
+	// Decoded names, indexed by record. Written racily, which is safe as strings are immutable.
+	private final String[] names;
+	private final String[] attrNames;
+	// Flag tables, indexed by record. Written racily, which is safe as tables are safe to share.
+	private final FlagTable[] flagTables;
+
+	/**
+	 * @param path
+	 * 		Snapshot file to memory-map.
+	 *
+	 * @return Provider reading from the mapped snapshot.
+	 *
+	 * @throws IOException
+	 * 		When the file cannot be mapped.
+	 * @throws IllegalArgumentException
+	 * 		When the file is not a snapshot, a snapshot of an unsupported version, or a malformed snapshot.
+	 */
+	@Nonnull
+	public static SnapshotResourceProvider open(@Nonnull Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			return new SnapshotResourceProvider(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @param data
+	 * 		Snapshot contents.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the data is not a snapshot, a snapshot of an unsupported version, or a malformed snapshot.
+	 */
+	public SnapshotResourceProvider(@Nonnull byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * @param buffer
+	 * 		Buffer containing a snapshot from its position to its limit.
+	 * 		The buffer's position is not modified, and its contents must not change afterwards.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the buffer does not contain a snapshot, a snapshot of an unsupported version, or a malformed snapshot.
+	 */
+	public SnapshotResourceProvider(@Nonnull ByteBuffer buffer) {
+		this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC)
+			throw new IllegalArgumentException("Buffer does not contain a resource snapshot");
+		int version = this.buffer.getInt(4);
+		if (version != VERSION)
+			throw new IllegalArgumentException("Unsupported resource snapshot version: " + version);
+		apiLevel = this.buffer.getInt(8);
+		nameCount = this.buffer.getInt(12);
+		nameTableOffset = this.buffer.getInt(16);
+		nameIndexOffset = this.buffer.getInt(20);
+		int nameIndexSize = this.buffer.getInt(24);
+		attrCount = this.buffer.getInt(28);
+		attrTableOffset = this.buffer.getInt(32);
+		attrIndexOffset = this.buffer.getInt(36);
+		int attrIndexSize = this.buffer.getInt(40);
+		attrIdCount = this.buffer.getInt(44);
+		attrIdTableOffset = this.buffer.getInt(48);
+		valueTableOffset = this.buffer.getInt(52);
+		stringsOffset = this.buffer.getInt(56);
+		if (nameCount < 0 || attrCount < 0 || attrIdCount < 0)
+			throw new IllegalArgumentException("Resource snapshot has negative record counts");
+
+		// Lookups probe the hash indices until they find an empty slot, so each needs a slot more than its records
+		if (!isIndexSize(nameIndexSize, nameCount) || !isIndexSize(attrIndexSize, attrCount))
+			throw new IllegalArgumentException("Resource snapshot hash index sizes are invalid");
+		nameIndexMask = nameIndexSize - 1;
+		attrIndexMask = attrIndexSize - 1;
+		checkSection("name table", nameTableOffset, (long) nameCount * NAME_RECORD_SIZE);
+		checkSection("name index", nameIndexOffset, nameIndexSize * 4L);
+		checkSection("attribute table", attrTableOffset, (long) attrCount * ATTR_RECORD_SIZE);
+		checkSection("attribute index", attrIndexOffset, attrIndexSize * 4L);
+		checkSection("attribute id table", attrIdTableOffset, (long) attrIdCount * ATTR_ID_RECORD_SIZE);
+		checkSection("strings", stringsOffset, 0);
+		checkSection("value table", valueTableOffset, (long) stringsOffset - valueTableOffset);
+		names = new String[nameCount];
+		attrNames = new String[attrCount];
+		flagTables = new FlagTable[attrCount];
+	}
+
+	/**
+	 * @param name
+	 * 		Name of the section, for the error message.
+	 * @param offset
+	 * 		Offset of the section in the snapshot.
+	 * @param length
+	 * 		Length of the section.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the section does not lie between the header and the end of the snapshot.
+	 */
+	private void checkSection(@Nonnull String name, int offset, long length) {
+		if (offset < HEADER_SIZE || length < 0 || offset + length > buffer.limit())
+			throw new IllegalArgumentException("Resource snapshot " + name + " is out of bounds");
+	}
+
+	private static boolean isIndexSize(int size, int count) {
+		return size > count && (size & (size - 1)) == 0;
+	}
+
+	/**
+	 * @return Android API level the snapshot was written for, or {@code 0} if not applicable.
+	 */
+	public int getApiLevel() {
+		return apiLevel;
+	}
+
+	/**
+	 * @param resName
+	 * 		Resource name.
+	 *
+	 * @return Resource ID, or {@code -1} if not present.
+	 */
+	public int getResId(@Nonnull String resName) {
+		int hash = resName.hashCode();
+		for (int probe = 0, slot = hash & nameIndexMask; probe <= nameIndexMask; probe++, slot = (slot + 1) & nameIndexMask) {
+			int record = buffer.getInt(nameIndexOffset + slot * 4) - 1;
+			if (record < 0)
+				return -1;
+			int recordOffset = nameTableOffset + record * NAME_RECORD_SIZE;
+			if (buffer.getInt(recordOffset + 4) == hash && resName.equals(getName(record)))
+				return buffer.getInt(recordOffset);
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean hasResName(int resId) {
+		return findName(resId) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResName(int resId) {
+		int record = findName(resId);
+		if (record < 0)
+			return null;
+		return getName(record);
+	}
+
+	@Override
+	public boolean hasResFlag(@Nonnull String resName) {
+		return findAttr(resName, KIND_FLAG) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResFlagNames(@Nonnull String resName, long mask) {
+		return getFlagNames(findAttr(resName, KIND_FLAG), mask);
+	}
+
+	@Override
+	public boolean hasResFlag(int attrResId) {
+		return findAttr(attrResId, KIND_FLAG) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResFlagNames(int attrResId, long mask) {
+		return getFlagNames(findAttr(attrResId, KIND_FLAG), mask);
+	}
+
+	@Nullable
+	@Override
+	public FlagTable getResFlagTable(int attrResId) {
+		int record = findAttr(attrResId, KIND_FLAG);
+		if (record < 0)
+			return null;
+		return getFlagTable(record);
+	}
+
+	@Override
+	public boolean hasResEnum(@Nonnull String resName) {
+		return findAttr(resName, KIND_ENUM) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResEnumName(@Nonnull String resName, long value) {
+		return getEnumName(findAttr(resName, KIND_ENUM), value);
+	}
+
+	@Override
+	public boolean hasResEnum(int attrResId) {
+		return findAttr(attrResId, KIND_ENUM) >= 0;
+	}
+
+	@Nullable
+	@Override
+	public String getResEnumName(int attrResId, long value) {
+		return getEnumName(findAttr(attrResId, KIND_ENUM), value);
+	}
+
+	/**
+	 * @param record
+	 * 		Index of a flag attribute record, or {@code -1} if not present.
+	 * @param mask
+	 * 		Flag value mask.
+	 *
+	 * @return Flag names of the value, or {@code null} if the attribute is not present or the flags do not
+	 * make up the value.
+	 */
+	@Nullable
+	private String getFlagNames(int record, long mask) {
+		if (record < 0)
+			return null;
+		return getFlagTable(record).getFlagNames((int) mask);
+	}
+
+	/**
+	 * @param record
+	 * 		Index of a flag attribute record.
+	 *
+	 * @return Compiled flags of the attribute.
+	 */
+	@Nonnull
+	private FlagTable getFlagTable(int record) {
+		FlagTable table = flagTables[record];
+		if (table == null) {
+			int recordOffset = attrTableOffset + record * ATTR_RECORD_SIZE;
+			int count = buffer.getInt(recordOffset + 12);
+			int valueOffset = valueTableOffset + buffer.getInt(recordOffset + 16) * VALUE_RECORD_SIZE;
+			int[] values = new int[count];
+			String[] names = new String[count];
+			for (int i = 0; i < count; i++, valueOffset += VALUE_RECORD_SIZE) {
+				values[i] = (int) buffer.getLong(valueOffset);
+				names[i] = getString(buffer.getInt(valueOffset + 8));
+			}
+			flagTables[record] = table = new FlagTable(values, names);
+		}
+		return table;
+	}
+
+	/**
+	 * @param record
+	 * 		Index of an enum attribute record, or {@code -1} if not present.
+	 * @param value
+	 * 		Enum value.
+	 *
+	 * @return Enum name of the value, or {@code null} if the attribute is not present or the value has no name.
+	 */
+	@Nullable
+	private String getEnumName(int record, long value) {
+		if (record < 0)
+			return null;
+		int recordOffset = attrTableOffset + record * ATTR_RECORD_SIZE;
+		int count = buffer.getInt(recordOffset + 12);
+		int valueOffset = valueTableOffset + buffer.getInt(recordOffset + 16) * VALUE_RECORD_SIZE;
+		for (int i = 0; i < count; i++, valueOffset += VALUE_RECORD_SIZE)
+			if (buffer.getLong(valueOffset) == value)
+				return getString(buffer.getInt(valueOffset + 8));
+		return null;
+	}
+
+	/**
+	 * @param resId
+	 * 		Resource ID.
+	 *
+	 * @return Index of the name record of the resource, or {@code -1} if not present.
+	 */
+	private int findName(int resId) {
+		int low = 0;
+		int high = nameCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midId = buffer.getInt(nameTableOffset + mid * NAME_RECORD_SIZE);
+			if (midId < resId)
+				low = mid + 1;
+			else if (midId > resId)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param resName
+	 * 		Attribute name.
+	 * @param kind
+	 * 		Kind of values of the attribute.
+	 *
+	 * @return Index of the attribute record, or {@code -1} if not present.
+	 */
+	private int findAttr(@Nonnull String resName, int kind) {
+		int hash = resName.hashCode();
+		for (int probe = 0, slot = hash & attrIndexMask; probe <= attrIndexMask; probe++, slot = (slot + 1) & attrIndexMask) {
+			int record = buffer.getInt(attrIndexOffset + slot * 4) - 1;
+			if (record < 0)
+				return -1;
+			int recordOffset = attrTableOffset + record * ATTR_RECORD_SIZE;
+			if (buffer.getInt(recordOffset) == hash && buffer.getInt(recordOffset + 8) == kind
+					&& resName.equals(getAttrRecordName(record)))
+				return record;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param attrResId
+	 * 		Resource ID of an attribute.
+	 * @param kind
+	 * 		Kind of values of the attribute.
+	 *
+	 * @return Index of the attribute record, or {@code -1} if not present.
+	 */
+	private int findAttr(int attrResId, int kind) {
+		// Find the first id record of the attribute, as an attribute may have records of both kinds
+		int low = 0;
+		int high = attrIdCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (buffer.getInt(attrIdTableOffset + mid * ATTR_ID_RECORD_SIZE) < attrResId)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		for (int i = low; i < attrIdCount; i++) {
+			int recordOffset = attrIdTableOffset + i * ATTR_ID_RECORD_SIZE;
+			if (buffer.getInt(recordOffset) != attrResId)
+				break;
+			int record = buffer.getInt(recordOffset + 4);
+			if (buffer.getInt(attrTableOffset + record * ATTR_RECORD_SIZE + 8) == kind)
+				return record;
+		}
+		return -1;
+	}
+
+	@Nonnull
+	private String getName(int record) {
+		String name = names[record];
+		if (name == null)
+			names[record] = name = getString(buffer.getInt(nameTableOffset + record * NAME_RECORD_SIZE + 8));
+		return name;
+	}
+
+	@Nonnull
+	private String getAttrRecordName(int record) {
+		String name = attrNames[record];
+		if (name == null)
+			attrNames[record] = name = getString(buffer.getInt(attrTableOffset + record * ATTR_RECORD_SIZE + 4));
+		return name;
+	}
+
+	@Nonnull
+	private String getString(int offset) {
+		int position = stringsOffset + offset;
+		int length = buffer.getShort(position) & 0xFFFF;
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = buffer.get(position + 2 + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -48,8 +48,10 @@ public class SplitAndroidResourceProvider implements AndroidResourceProvider {
 	@Nullable
 	@Override
 	public String getResName(int resId) {
-		if (primary.hasResName(resId))
-			return primary.getResName(resId);
+		// A name lookup answers whether the name exists as well, there is no need to ask first.
+		String name = primary.getResName(resId);
+		if (name != null)
+			return name;
 		return secondary.getResName(resId);
 	}
 
@@ -66,6 +68,28 @@ public class SplitAndroidResourceProvider implements AndroidResourceProvider {
 		return secondary.getResFlagNames(resName, mask);
 	}
 
+	@Override
+	public boolean hasResFlag(int attrResId) {
+		return primary.hasResFlag(attrResId) || secondary.hasResFlag(attrResId);
+	}
+
+	@Nullable
+	@Override
+	public String getResFlagNames(int attrResId, long mask) {
+		if (primary.hasResFlag(attrResId))
+			return primary.getResFlagNames(attrResId, mask);
+		return secondary.getResFlagNames(attrResId, mask);
+	}
+
+	@Nullable
+	@Override
+	public FlagTable getResFlagTable(int attrResId) {
+		FlagTable table = primary.getResFlagTable(attrResId);
+		if (table != null)
+			return table;
+		return secondary.getResFlagTable(attrResId);
+	}
+
 	@Override
 	public boolean hasResEnum(@Nonnull String resName) {
 		return primary.hasResEnum(resName) || secondary.hasResEnum(resName);
@@ -78,4 +102,26 @@ public class SplitAndroidResourceProvider implements AndroidResourceProvider {
 			return primary.getResEnumName(resName, value);
 		return secondary.getResEnumName(resName, value);
 	}
+
+	@Override
+	public boolean hasResEnum(int attrResId) {
+		return primary.hasResEnum(attrResId) || secondary.hasResEnum(attrResId);
+	}
+
+	@Nullable
+	@Override
+	public String getResEnumName(int attrResId, long value) {
+		if (primary.hasResEnum(attrResId))
+			return primary.getResEnumName(attrResId, value);
+		return secondary.getResEnumName(attrResId, value);
+	}
+
+	@Nullable
+	@Override
+	public String getAttrName(int attrResId) {
+		String attrName = primary.getAttrName(attrResId);
+		if (attrName != null)
+			return attrName;
+		return secondary.getAttrName(attrResId);
+	}
 }
@@ -0,0 +1,231 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decodes many binary XML documents concurrently, such as all the layouts and the manifest of an application.
+ * <p>
+ * Documents are decoded on an {@link Executor}, and each result or failure is reported to a {@link Callback}.
+ * Workers reuse pooled {@link XmlDecoder} instances, which share one
+ * {@link ResourceNameCache#ResourceNameCache(boolean) concurrent} cache, so names are looked up once per batch
+ * rather than once per decoder. The pool and cache are created for each call to {@link #decode(Map, Callback)}
+ * and dropped once its documents are decoded, so they do not grow over the life of the batch decoder.
+ * The resource providers are shared by all workers, so they must be safe to use from multiple threads at once,
+ * as the providers of this library are.
+ */
+public class XmlBatchDecoder {
+	private final AndroidResourceProvider androidResources;
+	private final AndroidResourceProvider arscResources;
+	private final Executor executor;
+
+	/**
+	 * Creates a batch decoder running on the {@link ForkJoinPool#commonPool() common pool}.
+	 *
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 */
+	public XmlBatchDecoder(@Nonnull AndroidResourceProvider androidResources,
+						   @Nullable AndroidResourceProvider arscResources) {
+		this(androidResources, arscResources, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param executor
+	 * 		Executor to decode documents on, such as one from {@link #newDefaultExecutor()}.
+	 */
+	public XmlBatchDecoder(@Nonnull AndroidResourceProvider androidResources,
+						   @Nullable AndroidResourceProvider arscResources,
+						   @Nonnull Executor executor) {
+		this.androidResources = androidResources;
+		this.arscResources = arscResources;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return New executor starting a virtual thread per document when running on a JDK which supports them,
+	 * otherwise a fixed pool of daemon threads, one per available processor. Shut it down when done.
+	 */
+	@Nonnull
+	public static ExecutorService newDefaultExecutor() {
+		try {
+			// Looked up reflectively, as virtual threads are not available on all supported JDKs
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+				Thread thread = new Thread(task, "xml-batch-decoder");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * @param paths
+	 * 		Binary XML files to decode.
+	 * @param callback
+	 * 		Callback to report the decoded XML or failure of each file to.
+	 *
+	 * @return Future completed once every file has been reported to the callback.
+	 * It completes exceptionally if the callback throws.
+	 */
+	@Nonnull
+	public CompletableFuture<Void> decodePaths(@Nonnull Collection<Path> paths, @Nonnull Callback<Path> callback) {
+		Map<Path, Source> inputs = new LinkedHashMap<>();
+		for (Path path : paths)
+			inputs.put(path, Source.of(path));
+		return decode(inputs, callback);
+	}
+
+	/**
+	 * @param inputs
+	 * 		Binary XML documents to decode, keyed by the value to report them to the callback with.
+	 * @param callback
+	 * 		Callback to report the decoded XML or failure of each document to.
+	 * @param <K>
+	 * 		Key type identifying documents, such as their path within an APK.
+	 *
+	 * @return Future completed once every document has been reported to the callback.
+	 * It completes exceptionally if the callback throws.
+	 */
+	@Nonnull
+	public <K> CompletableFuture<Void> decode(@Nonnull Map<K, ? extends Source> inputs,
+											  @Nonnull Callback<K> callback) {
+		Batch batch = new Batch();
+		CompletableFuture<?>[] tasks = new CompletableFuture<?>[inputs.size()];
+		int i = 0;
+		for (Map.Entry<K, ? extends Source> input : inputs.entrySet()) {
+			K key = input.getKey();
+			Source source = input.getValue();
+			tasks[i++] = CompletableFuture.runAsync(() -> batch.decodeOne(key, source, callback), executor);
+		}
+		return CompletableFuture.allOf(tasks);
+	}
+
+	/**
+	 * Decoders and name cache of a single call to {@link #decode(Map, Callback)}.
+	 */
+	private final class Batch {
+		private final ResourceNameCache nameCache = new ResourceNameCache(true);
+		/** Decoders not in use. Bounded, as executors starting a thread per task may use many decoders at once. */
+		private final Queue<XmlDecoder> idleDecoders =
+				new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+
+		private <K> void decodeOne(K key, @Nonnull Source source, @Nonnull Callback<K> callback) {
+			String xml;
+			XmlDecoder decoder = idleDecoders.poll();
+			if (decoder == null)
+				decoder = new XmlDecoder(androidResources, arscResources, nameCache);
+			try {
+				xml = decoder.decode(source.open());
+			} catch (VirtualMachineError error) {
+				throw error;
+			} catch (Throwable error) {
+				// Errors such as an AssertionError only fail this document, unlike errors of the JVM itself
+				callback.onFailure(key, error);
+				return;
+			} finally {
+				// Decoders reset their state when decoding the next document, even after a failure
+				idleDecoders.offer(decoder);
+			}
+			callback.onDecoded(key, xml);
+		}
+	}
+
+	/**
+	 * Supplier of a binary XML document to decode.
+	 */
+	@FunctionalInterface
+	public interface Source {
+		/**
+		 * @return Parsed document.
+		 *
+		 * @throws IOException
+		 * 		When the document cannot be read.
+		 */
+		@Nonnull
+		BinaryResourceFile open() throws IOException;
+
+		/**
+		 * @param path
+		 * 		Binary XML file.
+		 *
+		 * @return Source memory-mapping the file when the document is decoded.
+		 */
+		@Nonnull
+		static Source of(@Nonnull Path path) {
+			return () -> BinaryResourceFile.open(path);
+		}
+
+		/**
+		 * @param data
+		 * 		Binary XML document.
+		 *
+		 * @return Source parsing the data when the document is decoded.
+		 */
+		@Nonnull
+		static Source of(@Nonnull byte[] data) {
+			return () -> new BinaryResourceFile(data);
+		}
+
+		/**
+		 * @param buffer
+		 * 		Buffer containing a binary XML document from its position to its limit.
+		 * 		The buffer's position is not modified, and its contents must not change until the document is decoded.
+		 *
+		 * @return Source parsing the buffer when the document is decoded.
+		 */
+		@Nonnull
+		static Source of(@Nonnull ByteBuffer buffer) {
+			return () -> new BinaryResourceFile(buffer);
+		}
+	}
+
+	/**
+	 * Receives the results of a batch. Methods are called from the executor's threads, possibly at the same time.
+	 *
+	 * @param <K>
+	 * 		Key type identifying documents.
+	 */
+	public interface Callback<K> {
+		/**
+		 * @param key
+		 * 		Key of the decoded document.
+		 * @param xml
+		 * 		Decoded XML.
+		 */
+		void onDecoded(K key, @Nonnull String xml);
+
+		/**
+		 * @param key
+		 * 		Key of the document which could not be decoded.
+		 * @param error
+		 * 		Reason the document could not be decoded. Any exception or error except a {@link VirtualMachineError},
+		 * 		which fails the future of the batch instead.
+		 */
+		void onFailure(K key, @Nonnull Throwable error);
+	}
+}
@@ -5,9 +5,15 @@ import com.google.devrel.gmscore.tools.apk.arsc.*;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -18,9 +24,14 @@ import java.util.stream.Collectors;
  * @author Matt Coley
  */
 public class XmlDecoder {
-	private final XmlBuilder builder = new XmlBuilder();
+	private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n";
+	private final XmlBuilder builder;
 	private final Map<String, String> namespaces = new HashMap<>();
 	private final SplitAndroidResourceProvider resourceProvider;
+	private final ResourceNameCache nameCache;
+	private final boolean ownsNameCache;
+	private final StringBuilder scratch = new StringBuilder();
+	private StringBuilder output;
 	private boolean namespacesAdded;
 	private StringPoolChunk stringPool;
 	private XmlResourceMapChunk resourceMap;
@@ -34,7 +45,77 @@ public class XmlDecoder {
 	 */
 	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
 					  @Nullable AndroidResourceProvider arscResources) {
+		this(androidResources, arscResources, new StringBuilder());
+	}
+
+	/**
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param out
+	 * 		Destination to stream XML output to as chunks are visited.
+	 * 		Call {@link #flush()} once all chunks have been visited.
+	 */
+	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					  @Nullable AndroidResourceProvider arscResources,
+					  @Nonnull Appendable out) {
+		this(androidResources, arscResources, out, new ResourceNameCache(), true);
+	}
+
+	/**
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param out
+	 * 		Destination to stream XML output to as chunks are visited.
+	 * 		Call {@link #flush()} once all chunks have been visited.
+	 * @param nameCache
+	 * 		Cache of names looked up from the resource models. Can be shared with other decoders
+	 * 		using the same resource models, so names looked up by one do not need to be looked up again.
+	 * 		The cache is kept across documents, and only cleared by the caller.
+	 */
+	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					  @Nullable AndroidResourceProvider arscResources,
+					  @Nonnull Appendable out,
+					  @Nonnull ResourceNameCache nameCache) {
+		this(androidResources, arscResources, out, nameCache, false);
+	}
+
+	/**
+	 * Creates a decoder for decoding documents to strings with {@link #decode(BinaryResourceFile)}.
+	 *
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param nameCache
+	 * 		Cache of names looked up from the resource models. Can be shared with other decoders
+	 * 		using the same resource models, so names looked up by one do not need to be looked up again.
+	 * 		The cache is kept across documents, and only cleared by the caller.
+	 */
+	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					  @Nullable AndroidResourceProvider arscResources,
+					  @Nonnull ResourceNameCache nameCache) {
+		this(androidResources, arscResources, null, nameCache, false);
+	}
+
+	private XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					   @Nullable AndroidResourceProvider arscResources,
+					   @Nullable Appendable out,
+					   @Nonnull ResourceNameCache nameCache,
+					   boolean ownsNameCache) {
+		// Without a destination, output goes to the builder reused by decode(BinaryResourceFile)
+		if (out == null)
+			out = output = new StringBuilder();
+		builder = new XmlBuilder(out);
 		resourceProvider = new SplitAndroidResourceProvider(new DelegatingAndroidResourceProvider(arscResources), androidResources);
+		this.nameCache = nameCache;
+		this.ownsNameCache = ownsNameCache;
 	}
 
 	/**
@@ -52,17 +133,157 @@ public class XmlDecoder {
 	public static String decode(@Nonnull BinaryResourceFile binaryResource,
 								@Nonnull AndroidResourceProvider androidResources,
 								@Nullable AndroidResourceProvider arscResources) {
-		StringBuilder out = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
-		binaryResource.getChunks().stream()
-				.filter(c -> c instanceof XmlChunk)
-				.map(c -> (XmlChunk) c).forEach(xmlChunk -> {
-					XmlDecoder printer = new XmlDecoder(androidResources, arscResources);
-					visitChunks(xmlChunk.getChunks(), printer);
-					out.append(printer.getReconstructedXml());
-				});
+		StringBuilder out = new StringBuilder();
+		decodeTo(binaryResource, androidResources, arscResources, out);
 		return out.toString();
 	}
 
+	/**
+	 * @param binaryResource
+	 * 		Binary XML resource to decode.
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param out
+	 * 		Destination to stream the decoded XML to, such as a {@link Writer}.
+	 *
+	 * @throws IOException
+	 * 		When writing to the destination fails.
+	 */
+	public static void decode(@Nonnull BinaryResourceFile binaryResource,
+							  @Nonnull AndroidResourceProvider androidResources,
+							  @Nullable AndroidResourceProvider arscResources,
+							  @Nonnull Appendable out) throws IOException {
+		try {
+			decodeTo(binaryResource, androidResources, arscResources, out);
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * @param binaryResource
+	 * 		Binary XML resource to decode.
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param out
+	 * 		Destination to stream the decoded XML to, encoded as UTF-8.
+	 * 		The stream is flushed, but not closed.
+	 *
+	 * @throws IOException
+	 * 		When writing to the destination fails.
+	 */
+	public static void decode(@Nonnull BinaryResourceFile binaryResource,
+							  @Nonnull AndroidResourceProvider androidResources,
+							  @Nullable AndroidResourceProvider arscResources,
+							  @Nonnull OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		decode(binaryResource, androidResources, arscResources, writer);
+		writer.flush();
+	}
+
+	private static void decodeTo(@Nonnull BinaryResourceFile binaryResource,
+								 @Nonnull AndroidResourceProvider androidResources,
+								 @Nullable AndroidResourceProvider arscResources,
+								 @Nonnull Appendable out) {
+		new XmlDecoder(androidResources, arscResources, out).decodeTo(binaryResource, out);
+	}
+
+	/**
+	 * Decodes another document with this decoder, discarding the state of any previously decoded document.
+	 * Decoding many documents with one decoder avoids setting up a new decoder for each of them.
+	 * A decoder must not be used by multiple threads at once.
+	 *
+	 * @param binaryResource
+	 * 		Binary XML resource to decode.
+	 *
+	 * @return Decoded string from binary model.
+	 */
+	@Nonnull
+	public String decode(@Nonnull BinaryResourceFile binaryResource) {
+		StringBuilder out = output;
+		if (out == null)
+			out = output = new StringBuilder();
+		else
+			out.setLength(0);
+		decodeTo(binaryResource, out);
+		return out.toString();
+	}
+
+	/**
+	 * Decodes another document with this decoder, discarding the state of any previously decoded document.
+	 * Decoding many documents with one decoder avoids setting up a new decoder for each of them.
+	 * A decoder must not be used by multiple threads at once.
+	 *
+	 * @param binaryResource
+	 * 		Binary XML resource to decode.
+	 * @param out
+	 * 		Destination to stream the decoded XML to, such as a {@link Writer}.
+	 *
+	 * @throws IOException
+	 * 		When writing to the destination fails.
+	 */
+	public void decode(@Nonnull BinaryResourceFile binaryResource, @Nonnull Appendable out) throws IOException {
+		try {
+			decodeTo(binaryResource, out);
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private void decodeTo(@Nonnull BinaryResourceFile binaryResource, @Nonnull Appendable out) {
+		try {
+			out.append(XML_HEADER);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		for (Chunk chunk : binaryResource.getChunks()) {
+			if (chunk instanceof XmlChunk) {
+				reset(out);
+				visitChunks(((XmlChunk) chunk).getChunks(), this);
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Discards the state of the document being decoded, so that another document can be visited.
+	 * Output continues to be written to the current destination. Call {@link #flush()} first to
+	 * keep output that is still held back.
+	 */
+	public void reset() {
+		resetDocument();
+		builder.reset();
+	}
+
+	/**
+	 * Discards the state of the document being decoded, so that another document can be visited.
+	 * Call {@link #flush()} first to keep output that is still held back.
+	 *
+	 * @param out
+	 * 		Destination to stream XML output of the next document to.
+	 */
+	public void reset(@Nonnull Appendable out) {
+		resetDocument();
+		builder.reset(out);
+	}
+
+	private void resetDocument() {
+		namespaces.clear();
+		namespacesAdded = false;
+		stringPool = null;
+		resourceMap = null;
+
+		// Caches passed in by the caller may be shared, so only the cache of this decoder is cleared
+		if (ownsNameCache)
+			nameCache.clear();
+	}
+
 	/**
 	 * @param chunks
 	 * 		Chunks to visit.
@@ -176,7 +397,16 @@ public class XmlDecoder {
 	}
 
 	/**
-	 * @return XML output.
+	 * Writes any XML output still held back by the builder to the destination.
+	 * Call this once all chunks have been visited.
+	 */
+	public void flush() {
+		builder.flush();
+	}
+
+	/**
+	 * @return XML output. For decoders streaming to a destination, this is the destination's
+	 * {@link Object#toString()} value.
 	 */
 	@Nonnull
 	public String getReconstructedXml() {
@@ -196,13 +426,17 @@ public class XmlDecoder {
 		if (!(name == null || name.isEmpty()))
 			return name;
 
-		BinaryResourceIdentifier resourceId = resourceMap.getResourceId(attribute.nameIndex());
-		if (resourceId == null)
+		int nameIndex = attribute.nameIndex();
+		if (nameIndex < 0 || nameIndex >= resourceMap.getResourceCount())
 			return "";
 
-		name = resourceProvider.getResName(resourceId.id());
+		int resourceId = resourceMap.getRawResourceId(nameIndex);
+
+		name = nameCache.getPrimaryResName(resourceProvider, resourceId);
+		if (name == null)
+			name = nameCache.getSecondaryResName(resourceProvider, resourceId);
 		if (name == null)
-			return String.format("(%s)", resourceId);
+			return AndroidFormatting.appendHex(scratch().append("(0x"), resourceId, 8).append(')').toString();
 
 		return name.replace("attr/", "android:");
 	}
@@ -213,8 +447,13 @@ public class XmlDecoder {
 		if (!(rawValue == null || rawValue.isEmpty()))
 			return rawValue;
 
-		BinaryResourceValue resValue = attribute.typedValue();
-		return formatValue(resValue, attribute.name());
+		// Attributes with an entry in the resource map are identified by resource ID as well as by name
+		int nameIndex = attribute.nameIndex();
+		int attrResId = resourceMap != null && nameIndex >= 0 && nameIndex < resourceMap.getResourceCount()
+				? resourceMap.getRawResourceId(nameIndex) : 0;
+		long typedValue = attribute.packedTypedValue();
+		return formatValue(BinaryResourceValue.packedType(typedValue), BinaryResourceValue.packedData(typedValue),
+				attribute.name(), attrResId);
 	}
 
 	/**
@@ -228,79 +467,133 @@ public class XmlDecoder {
 	@Nonnull
 	public String formatValue(@Nonnull BinaryResourceValue resValue,
 							  @Nonnull String elementName) {
-		int data = resValue.data();
-		switch (resValue.type()) {
+		return formatValue(resValue.type(), resValue.data(), elementName);
+	}
+
+	/**
+	 * @param type
+	 * 		The type of the value to format.
+	 * @param data
+	 * 		The data of the value to format, interpreted according to the type.
+	 * @param elementName
+	 * 		The name of the element holding the value.
+	 *
+	 * @return Formatted string.
+	 */
+	@Nonnull
+	public String formatValue(@Nonnull BinaryResourceValue.Type type, int data,
+							  @Nonnull String elementName) {
+		return formatValue(type, data, elementName, 0);
+	}
+
+	/**
+	 * @param type
+	 * 		The type of the value to format.
+	 * @param data
+	 * 		The data of the value to format, interpreted according to the type.
+	 * @param elementName
+	 * 		The name of the element holding the value.
+	 * @param attrResId
+	 * 		The resource ID of the attribute holding the value, or {@code 0} if not known.
+	 *
+	 * @return Formatted string.
+	 */
+	@Nonnull
+	public String formatValue(@Nonnull BinaryResourceValue.Type type, int data,
+							  @Nonnull String elementName, int attrResId) {
+		switch (type) {
 			case UNKNOWN:
 				return "?";
 			case NULL:
 				return "null";
 			case ATTRIBUTE: {
-				String resName = resourceProvider.getPrimary().getResName(data);
+				String resName = nameCache.getPrimaryResName(resourceProvider, data);
 				if (resName != null)
 					return "?" + resName;
-				resName = resourceProvider.getSecondary().getResName(data);
+				resName = nameCache.getSecondaryResName(resourceProvider, data);
 				if (resName != null)
 					return "?android:" + resName;
-				return String.format(Locale.US, "?0x%1$x", data);
+				return AndroidFormatting.appendHex(scratch().append("?0x"), data).toString();
 			}
 			case STRING:
 				return stringPool != null && stringPool.getStringCount() < data
 						? stringPool.getString(data)
-						: String.format(Locale.US, "@string/0x%1$x", data);
+						: AndroidFormatting.appendHex(scratch().append("@string/0x"), data).toString();
 			case FLOAT:
-				return String.format(Locale.US, "%f", (float) data);
+				// The data is converted to a float numerically, so it always has a whole value
+				return scratch().append((long) (float) data).append(".000000").toString();
 			case FRACTION:
-				return AndroidFormatting.toFractionString(data);
+				return AndroidFormatting.appendFraction(scratch(), data).toString();
 			case DIMENSION:
-				return AndroidFormatting.toDimensionString(data);
+				return AndroidFormatting.appendDimension(scratch(), data).toString();
 			case REFERENCE:
 			case DYNAMIC_REFERENCE: {
 				if (data == 0)
 					return "0";
-				String resName = resourceProvider.getPrimary().getResName(data);
+				String resName = nameCache.getPrimaryResName(resourceProvider, data);
 				if (resName != null)
 					return "@" + resName;
-				resName = resourceProvider.getSecondary().getResName(data);
+				resName = nameCache.getSecondaryResName(resourceProvider, data);
 				if (resName != null)
 					return "@android:" + resName;
-				return String.format(Locale.US, "@ref/0x%1$08x", data);
+				return AndroidFormatting.appendHex(scratch().append("@ref/0x"), data, 8).toString();
 			}
 			case DYNAMIC_ATTRIBUTE:
 				// TODO: Google's XmlPrinter has no reference implementation,
 				//   so I'm not sure how we're supposed to represent this yet.
 				break;
 			case INT_DEC: {
-				String rep = null;
-				if (resourceProvider.hasResFlag(elementName))
-					rep = resourceProvider.getResFlagNames(elementName, data);
-				else if (resourceProvider.hasResEnum(elementName))
-					rep = resourceProvider.getResEnumName(elementName, data);
+				String rep = getValueName(elementName, attrResId, data);
 				if (rep == null)
 					rep = Integer.toString(data);
 				return rep;
 			}
 			case INT_HEX: {
-				String rep = null;
-				if (resourceProvider.hasResFlag(elementName))
-					rep = resourceProvider.getResFlagNames(elementName, data);
-				else if (resourceProvider.hasResEnum(elementName))
-					rep = resourceProvider.getResEnumName(elementName, data);
+				String rep = getValueName(elementName, attrResId, data);
 				if (rep == null)
-					rep = "0x" + Integer.toHexString(data);
+					rep = AndroidFormatting.appendHex(scratch().append("0x"), data).toString();
 				return rep;
 			}
 			case INT_BOOLEAN:
 				return Boolean.toString(data != 0);
 			case INT_COLOR_ARGB8:
-				return String.format("argb8(0x%x)", data);
+				return AndroidFormatting.appendHex(scratch().append("argb8(0x"), data).append(')').toString();
 			case INT_COLOR_RGB8:
-				return String.format("rgb8(0x%x)", data);
+				return AndroidFormatting.appendHex(scratch().append("rgb8(0x"), data).append(')').toString();
 			case INT_COLOR_ARGB4:
-				return String.format("argb4(0x%x)", data);
+				return AndroidFormatting.appendHex(scratch().append("argb4(0x"), data).append(')').toString();
 			case INT_COLOR_RGB4:
-				return String.format("rgb4(0x%x)", data);
+				return AndroidFormatting.appendHex(scratch().append("rgb4(0x"), data).append(')').toString();
 		}
 
-		return String.format("@res/0x%x", data);
+		return AndroidFormatting.appendHex(scratch().append("@res/0x"), data).toString();
+	}
+
+	/**
+	 * @param elementName
+	 * 		The name of the attribute holding the value.
+	 * @param attrResId
+	 * 		The resource ID of the attribute holding the value, or {@code 0} if not known.
+	 * @param data
+	 * 		Integer value.
+	 *
+	 * @return Flag names or enum name of the value, or {@code null} if the value has no name.
+	 */
+	@Nullable
+	private String getValueName(@Nonnull String elementName, int attrResId, int data) {
+		// The resource ID identifies the attribute without hashing its name, and cannot confuse
+		// application and framework attributes sharing a name.
+		if (attrResId != 0)
+			return nameCache.getValueName(resourceProvider, attrResId, data);
+		return nameCache.getValueName(resourceProvider, elementName, data);
+	}
+
+	/**
+	 * @return Cleared builder for formatting values, reused to avoid allocating a builder per value.
+	 */
+	@Nonnull
+	private StringBuilder scratch() {
+		scratch.setLength(0);
+		return scratch;
 	}
 }
\ No newline at end of file
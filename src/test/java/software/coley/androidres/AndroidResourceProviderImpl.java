@@ -13,6 +13,8 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import software.coley.android.xml.AndroidResourceProvider;
+import software.coley.android.xml.FlagTable;
+import software.coley.android.xml.ResourceSnapshotWriter;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -37,6 +39,7 @@ public class AndroidResourceProviderImpl implements AndroidResourceProvider {
 	private final Map<String, String> attrToFormat;
 	private final Map<String, Object2LongMap<String>> attrToEnum;
 	private final Map<String, Object2LongMap<String>> attrToFlags;
+	private final Map<String, FlagTable> attrToFlagTable = new HashMap<>();
 	private final Map<String, BinaryResourceValue> attrToSimpleResource;
 	private final Map<String, Map<Integer, BinaryResourceValue>> attrToComplexResource;
 	private final Map<String, Set<String>> formatToAttrs;
@@ -57,6 +60,17 @@ public class AndroidResourceProviderImpl implements AndroidResourceProvider {
 		this.attrToSimpleResource = attrToSimpleResource;
 		this.attrToComplexResource = attrToComplexResource;
 		this.formatToAttrs = formatToAttrs;
+		attrToFlags.forEach((attr, values) -> {
+			// Streamed like the other lookups and snapshots, as iterating the map visits entries in another order
+			List<Object2LongMap.Entry<String>> entries = values.object2LongEntrySet().stream().collect(Collectors.toList());
+			int[] masks = new int[entries.size()];
+			String[] names = new String[entries.size()];
+			for (int i = 0; i < entries.size(); i++) {
+				masks[i] = (int) entries.get(i).getLongValue();
+				names[i] = entries.get(i).getKey();
+			}
+			attrToFlagTable.put(attr, new FlagTable(masks, names));
+		});
 	}
 
 	@Nonnull
@@ -113,6 +127,24 @@ public class AndroidResourceProviderImpl implements AndroidResourceProvider {
 		return ANDROID_BASE;
 	}
 
+	/**
+	 * @param apiLevel
+	 * 		Android API level of the resources.
+	 *
+	 * @return Writer for a snapshot of the names, enums and flags of these resources.
+	 */
+	@Nonnull
+	public ResourceSnapshotWriter toSnapshot(int apiLevel) {
+		ResourceSnapshotWriter writer = new ResourceSnapshotWriter(apiLevel);
+		resIdToName.forEach(writer::addName);
+		// Stream the values like the lookups below, so flags sharing a value are written in the same order
+		attrToEnum.forEach((attr, values) -> values.object2LongEntrySet().stream()
+				.forEachOrdered(e -> writer.addEnum(attr, e.getKey(), e.getLongValue())));
+		attrToFlags.forEach((attr, values) -> values.object2LongEntrySet().stream()
+				.forEachOrdered(e -> writer.addFlag(attr, e.getKey(), e.getLongValue())));
+		return writer;
+	}
+
 	/**
 	 * @param attrName
 	 * 		Local attribute name, without the {@code attr/} prefix.
@@ -257,16 +289,12 @@ public class AndroidResourceProviderImpl implements AndroidResourceProvider {
 	}
 
 	@Override
-	@Nonnull
+	@Nullable
 	public String getResFlagNames(@Nonnull String resName, long mask) {
-		Object2LongMap<String> values = attrToFlags.get(resName);
-		if (values == null)
-			return "";
-		return values.object2LongEntrySet().stream()
-				.filter(e -> (mask & e.getLongValue()) != 0L)
-				.sorted(Comparator.comparingLong(Object2LongMap.Entry::getLongValue))
-				.map(Map.Entry::getKey)
-				.collect(Collectors.joining("|"));
+		FlagTable table = attrToFlagTable.get(resName);
+		if (table == null)
+			return null;
+		return table.getFlagNames((int) mask);
 	}
 
 	static {
@@ -0,0 +1,227 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.TypeChunk;
+import org.junit.jupiter.api.Test;
+import software.coley.android.xml.AndroidResourceProvider;
+import software.coley.android.xml.ArscResourceProvider;
+import software.coley.android.xml.FlagTable;
+import software.coley.android.xml.SnapshotResourceProvider;
+import software.coley.android.xml.XmlDecoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static software.coley.androidres.ResourceTableBuilder.TYPE_ENUM;
+import static software.coley.androidres.ResourceTableBuilder.TYPE_FLAGS;
+
+/**
+ * Tests for {@link ArscResourceProvider} against tables made by {@link ResourceTableBuilder}.
+ */
+public class ArscResourceProviderTests {
+	private static final BinaryResourceFile SAMPLE = new BinaryResourceFile(ResourceTableBuilder.buildSample());
+	private static final AndroidResourceProviderImpl ANDROID_BASE = AndroidResourceProviderImpl.getAndroidBase();
+
+	@Test
+	void testNames() {
+		ArscResourceProvider provider = new ArscResourceProvider(SAMPLE);
+		AndroidResourceProviderImpl expected = AndroidResourceProviderImpl.fromArsc(SAMPLE);
+		for (int packageId : new int[]{0x01, 0x02, 0x7F}) {
+			for (int typeId = 0; typeId <= 4; typeId++) {
+				for (int entryId = 0; entryId <= 10; entryId++) {
+					int resId = packageId << 24 | typeId << 16 | entryId;
+					assertEquals(expected.getResName(resId), provider.getResName(resId));
+					assertEquals(expected.hasResName(resId), provider.hasResName(resId));
+				}
+			}
+		}
+
+		assertEquals("attr/gravity", provider.getResName(0x01010001));
+		assertEquals("id/center", provider.getResName(0x01020008));
+		assertEquals("string/title", provider.getResName(0x7F010001));
+		assertEquals("style/AppTheme", provider.getResName(0x7F020000));
+		assertNull(provider.getResName(0x7F010002));
+	}
+
+	@Test
+	void testEnums() {
+		ArscResourceProvider provider = new ArscResourceProvider(SAMPLE);
+		assertTrue(provider.hasResEnum("orientation"));
+		assertFalse(provider.hasResEnum("gravity"));
+		for (int value = 0; value <= 1; value++)
+			assertEquals(ANDROID_BASE.getResEnumName("orientation", value), provider.getResEnumName("orientation", value));
+		assertEquals("vertical", provider.getResEnumName("orientation", 1));
+		assertNull(provider.getResEnumName("orientation", 2));
+		assertNull(provider.getResEnumName("orientation", 1L << 32));
+		assertNull(provider.getResEnumName("gravity", 0x11));
+
+		// Values are not declared in order, and the first name of a value is used
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		ResourceTableBuilder.PackageBuilder app = builder.addPackage(0x7F, "com.example")
+				.addTypeName(1, "attr")
+				.addTypeName(2, "id");
+		ResourceTableBuilder.TypeBuilder ids = app.addType(2);
+		String[] valueNames = {"five", "one", "cinq", "three", "negative"};
+		for (int i = 0; i < valueNames.length; i++)
+			ids.addValue(i, valueNames[i], BinaryResourceValue.Type.INT_BOOLEAN, 0);
+		app.addType(1).addAttr(0, "level", TYPE_ENUM,
+				new int[]{0x7F020000, 0x7F020001, 0x7F020002, 0x7F020003, 0x7F020004}, new int[]{5, 1, 5, 3, -1});
+		provider = new ArscResourceProvider(new BinaryResourceFile(builder.build()));
+		assertEquals("five", provider.getResEnumName("level", 5));
+		assertEquals("one", provider.getResEnumName("level", 1));
+		assertEquals("three", provider.getResEnumName("level", 3));
+		assertEquals("negative", provider.getResEnumName("level", -1));
+		assertNull(provider.getResEnumName("level", 0));
+		assertNull(provider.getResEnumName("level", 4));
+		assertNull(provider.getResEnumName("level", 0xFFFFFFFFL));
+	}
+
+	@Test
+	void testFlags() {
+		ArscResourceProvider provider = new ArscResourceProvider(SAMPLE);
+		assertTrue(provider.hasResFlag("gravity"));
+		assertFalse(provider.hasResFlag("orientation"));
+		assertEquals("top", provider.getResFlagNames("gravity", 0x30));
+		assertEquals("bottom", provider.getResFlagNames("gravity", 0x50));
+		assertEquals("center_vertical", provider.getResFlagNames("gravity", 0x10));
+		assertEquals("center", provider.getResFlagNames("gravity", 0x11));
+		assertEquals("top|bottom", provider.getResFlagNames("gravity", 0x70));
+
+		// Values with bits not belonging to any flag have no names
+		assertNull(provider.getResFlagNames("gravity", 0));
+		assertNull(provider.getResFlagNames("gravity", 0x100));
+		assertNull(provider.getResFlagNames("orientation", 1));
+
+		FlagTable table = provider.getResFlagTable(0x01010001);
+		assertNotNull(table);
+		assertEquals(7, table.size());
+		assertEquals("center", table.getFlagNames(0x11));
+		assertNull(provider.getResFlagTable(0x01010000));
+		assertNull(provider.getResFlagTable(0x7F010001));
+	}
+
+	@Test
+	void testIdLookups() {
+		ArscResourceProvider provider = new ArscResourceProvider(SAMPLE);
+		assertTrue(provider.hasResEnum(0x01010000));
+		assertFalse(provider.hasResFlag(0x01010000));
+		assertEquals("vertical", provider.getResEnumName(0x01010000, 1));
+		assertNull(provider.getResEnumName(0x01010000, 2));
+		assertTrue(provider.hasResFlag(0x01010001));
+		assertFalse(provider.hasResEnum(0x01010001));
+		assertEquals("center", provider.getResFlagNames(0x01010001, 0x11));
+		assertNull(provider.getResFlagNames(0x01010001, 0x100));
+		assertNull(provider.getResEnumName(0x01010001, 0x11));
+		assertNull(provider.getResFlagNames(0x01010000, 1));
+		assertFalse(provider.hasResEnum(0x7F010000));
+
+		// Attributes sharing a name are told apart by their ids, while their name is both an enum and a flag
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		ResourceTableBuilder.PackageBuilder android = builder.addPackage(0x01, "android")
+				.addTypeName(1, "attr")
+				.addTypeName(2, "id");
+		android.addType(2).addValue(0, "vertical", BinaryResourceValue.Type.INT_BOOLEAN, 0);
+		android.addType(1).addAttr(0, "orientation", TYPE_ENUM, new int[]{0x01020000}, new int[]{1});
+		ResourceTableBuilder.PackageBuilder app = builder.addPackage(0x7F, "com.example")
+				.addTypeName(1, "attr")
+				.addTypeName(2, "id");
+		app.addType(2).addValue(0, "sideways", BinaryResourceValue.Type.INT_BOOLEAN, 0);
+		app.addType(1).addAttr(0, "orientation", TYPE_FLAGS, new int[]{0x7F020000}, new int[]{4});
+		provider = new ArscResourceProvider(new BinaryResourceFile(builder.build()));
+		assertTrue(provider.hasResEnum("orientation"));
+		assertTrue(provider.hasResFlag("orientation"));
+		assertEquals("vertical", provider.getResEnumName(0x01010000, 1));
+		assertTrue(provider.hasResFlag(0x7F010000));
+		assertFalse(provider.hasResEnum(0x7F010000));
+		assertEquals("sideways", provider.getResFlagNames(0x7F010000, 4));
+		assertNull(provider.getResEnumName(0x7F010000, 1));
+	}
+
+	@Test
+	void testObfuscatedEnums() throws IOException {
+		// The string pool names of attributes in this sample are mangled, so enums can only be named by attribute ids
+		Path path = Paths.get("src/test/resources/janky/4f50921f8e9ab3ea3b6657d155acbcf80fd907725c6ca8841f24cf673c15fffd.xml");
+		BinaryResourceFile binaryResource = new BinaryResourceFile(Files.readAllBytes(path));
+
+		// A framework table declaring only 'launchMode', at its id of 0x0101001D
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		ResourceTableBuilder.PackageBuilder android = builder.addPackage(0x01, "android")
+				.addTypeName(1, "attr")
+				.addTypeName(2, "id");
+		String[] modes = {"standard", "singleTop", "singleTask", "singleInstance"};
+		ResourceTableBuilder.TypeBuilder ids = android.addType(2);
+		for (int i = 0; i < modes.length; i++)
+			ids.addValue(i, modes[i], BinaryResourceValue.Type.INT_BOOLEAN, 0);
+		android.addType(1).addAttr(0x1D, "launchMode", ResourceTableBuilder.TYPE_ENUM,
+				new int[]{0x01020000, 0x01020001, 0x01020002, 0x01020003}, new int[]{0, 1, 2, 3});
+		ArscResourceProvider arsc = new ArscResourceProvider(new BinaryResourceFile(builder.build()));
+		SnapshotResourceProvider snapshot = new SnapshotResourceProvider(ANDROID_BASE.toSnapshot(30).toByteArray());
+
+		for (AndroidResourceProvider provider : new AndroidResourceProvider[]{ANDROID_BASE, snapshot, arsc}) {
+			String xml = XmlDecoder.decode(binaryResource, provider, null);
+			assertTrue(xml.contains("android:launchMode=\"singleTask\""), xml);
+			assertFalse(xml.contains("android:launchMode=\"2\""), xml);
+		}
+	}
+
+	@Test
+	void testEntryCap() {
+		// Entry indices past 0xFFFF do not fit in a resource id, and would otherwise be named as the next type
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		builder.addPackage(0x7F, "com.example")
+				.addTypeName(1, "string")
+				.addType(1)
+				.addString(0, "first", "First")
+				.addString(0x10000, "overflow", "Overflow")
+				.setEntryCount(0x10001);
+		ArscResourceProvider provider = new ArscResourceProvider(new BinaryResourceFile(builder.build()));
+		assertEquals("string/first", provider.getResName(0x7F010000));
+		assertFalse(provider.hasResName(0x7F020000));
+		assertNull(provider.getResName(0x7F020000));
+	}
+
+	@Test
+	void testJankyEntryCount() {
+		// Tampered entry counts should be bounded by the chunk, rather than allocating entries for the declared count
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		builder.addPackage(0x7F, "com.example")
+				.addTypeName(1, "string")
+				.addType(1)
+				.addString(0, "app_name", "Example")
+				.setEntryCount(Integer.MAX_VALUE);
+		byte[] table = builder.build();
+		for (boolean lazy : new boolean[]{false, true}) {
+			BinaryResourceFile file = new BinaryResourceFile(table, lazy);
+			ResourceTableChunk tableChunk = (ResourceTableChunk) file.getChunks().get(0);
+			TypeChunk typeChunk = tableChunk.getPackages().iterator().next().getTypeChunks().iterator().next();
+			assertEquals(1, typeChunk.getTotalEntryCount());
+			assertEquals("app_name", typeChunk.getEntry(0).key());
+			assertEquals("string/app_name", new ArscResourceProvider(file).getResName(0x7F010000));
+		}
+	}
+
+	@Test
+	void testInvalidPackagesAndTypes() {
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		// Ids of packages past 0xFF would overflow into the resource ids of other packages
+		builder.addPackage(0x17F, "invalid")
+				.addTypeName(1, "string")
+				.addType(1)
+				.addString(0, "invalid", "Invalid");
+		ResourceTableBuilder.PackageBuilder app = builder.addPackage(0x7F, "com.example")
+				.addTypeName(1, "string");
+		app.addType(1).addString(0, "ok", "OK");
+		// Type ids are 1-based, and must have a name in the type pool
+		app.addType(0).addString(0, "zero", "Zero");
+		app.addType(2).addString(0, "unnamed", "Unnamed");
+		ArscResourceProvider provider = new ArscResourceProvider(new BinaryResourceFile(builder.build()));
+		assertEquals("string/ok", provider.getResName(0x7F010000));
+		assertNull(provider.getResName(0x7F000000));
+		assertNull(provider.getResName(0x7F020000));
+	}
+}
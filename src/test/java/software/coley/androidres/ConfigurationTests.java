@@ -0,0 +1,247 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceConfiguration;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.ConfigurationResolver;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.TypeChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Tests for configuration matching, following the framework's {@code ResTable_config} rules.
+ * Configurations are written as resource directory qualifiers, such as {@code fr-rCA-land-hdpi}.
+ */
+public class ConfigurationTests {
+	private static final Pattern DP_QUALIFIER = Pattern.compile("(sw|w|h)(\\d+)dp");
+	private static final ResourceTableChunk TABLE =
+			(ResourceTableChunk) new BinaryResourceFile(ResourceTableBuilder.buildSample()).getChunks().get(0);
+
+	@ParameterizedTest
+	@MethodSource("getMatchCases")
+	void testMatch(String qualifiers, String device, boolean expected) {
+		assertEquals(expected, config(qualifiers).match(config(device)));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getBetterCases")
+	void testIsBetterThan(String qualifiers, String other, String device, boolean expected) {
+		BinaryResourceConfiguration config = config(qualifiers);
+		BinaryResourceConfiguration otherConfig = config(other);
+		BinaryResourceConfiguration deviceConfig = device == null ? null : config(device);
+
+		// Only configurations matching the device are compared
+		if (deviceConfig != null) {
+			assertTrue(config.match(deviceConfig));
+			assertTrue(otherConfig.match(deviceConfig));
+		}
+		assertEquals(expected, config.isBetterThan(otherConfig, deviceConfig));
+	}
+
+	@Test
+	void testResolve() {
+		// Resources of the sample table exist in the default and 'fr' configurations
+		for (boolean flatten : new boolean[]{false, true}) {
+			assertEquals("Example", resolveString("", 0x7F010000, flatten));
+			assertEquals("Example", resolveString("de-land", 0x7F010000, flatten));
+			assertEquals("Exemple", resolveString("fr", 0x7F010000, flatten));
+			assertEquals("Exemple", resolveString("fr-rCA-hdpi", 0x7F010000, flatten));
+			assertEquals("D'accord", resolveString("fr", 0x01030000, flatten));
+			assertEquals("Titre", resolveString("fr", 0x7F010001, flatten));
+			assertNull(resolveString("", 0x7F010001, flatten));
+			assertEquals("Hello", resolveString("fr", 0x7F010003, flatten));
+			assertNull(resolveString("fr", 0x7F010002, flatten));
+			assertNull(resolveString("fr", 0x7F030000, flatten));
+			assertNull(resolveString("fr", 0x02010000, flatten));
+		}
+	}
+
+	@Nullable
+	private static String resolveString(@Nonnull String device, int resourceId, boolean flatten) {
+		ConfigurationResolver resolver = new ConfigurationResolver(TABLE, config(device));
+		if (flatten)
+			resolver.flatten();
+		TypeChunk.Entry entry = resolver.resolve(resourceId);
+		if (entry == null)
+			return null;
+		return TABLE.getStringPool().getString(entry.value().data());
+	}
+
+	/**
+	 * @param qualifiers
+	 * 		Resource directory qualifiers separated by {@code -}, or an empty string for the default configuration.
+	 *
+	 * @return Configuration of the qualifiers.
+	 */
+	@Nonnull
+	private static BinaryResourceConfiguration config(@Nonnull String qualifiers) {
+		BinaryResourceConfiguration.Builder builder = BinaryResourceConfiguration.builder();
+		int screenLayout = 0;
+		for (String qualifier : qualifiers.split("-")) {
+			Matcher dp = DP_QUALIFIER.matcher(qualifier);
+			switch (qualifier) {
+				case "":
+					break;
+				case "port":
+					builder.orientation(1);
+					break;
+				case "land":
+					builder.orientation(2);
+					break;
+				case "ldpi":
+					builder.density(120);
+					break;
+				case "mdpi":
+					builder.density(160);
+					break;
+				case "hdpi":
+					builder.density(240);
+					break;
+				case "xhdpi":
+					builder.density(320);
+					break;
+				case "xxhdpi":
+					builder.density(480);
+					break;
+				case "anydpi":
+					builder.density(0xFFFE);
+					break;
+				case "small":
+					screenLayout |= 1;
+					break;
+				case "normal":
+					screenLayout |= 2;
+					break;
+				case "large":
+					screenLayout |= 3;
+					break;
+				case "xlarge":
+					screenLayout |= 4;
+					break;
+				case "notlong":
+					screenLayout |= 0x10;
+					break;
+				case "long":
+					screenLayout |= 0x20;
+					break;
+				default:
+					if (dp.matches()) {
+						int value = Integer.parseInt(dp.group(2));
+						if (dp.group(1).equals("sw"))
+							builder.smallestScreenWidthDp(value);
+						else if (dp.group(1).equals("w"))
+							builder.screenWidthDp(value);
+						else
+							builder.screenHeightDp(value);
+					} else if (qualifier.matches("v\\d+")) {
+						builder.sdkVersion(Integer.parseInt(qualifier.substring(1)));
+					} else if (qualifier.matches("r[A-Z]{2}")) {
+						builder.region(qualifier.substring(1));
+					} else if (qualifier.matches("[a-z]{2,3}")) {
+						builder.language(qualifier);
+					} else {
+						throw new IllegalArgumentException("Unsupported qualifier: " + qualifier);
+					}
+			}
+		}
+		return builder.screenLayout(screenLayout).build();
+	}
+
+	public static Stream<Arguments> getMatchCases() {
+		return Stream.of(
+				// Configuration, device, whether the configuration can be used by the device
+				arguments("", "fr-rCA-land-hdpi-large-v30", true),
+				// Locale
+				arguments("fr", "fr-rCA", true),
+				arguments("fr", "fr", true),
+				arguments("de", "fr-rCA", false),
+				arguments("fr-rFR", "fr-rCA", false),
+				arguments("fr-rCA", "fr", false),
+				arguments("fr", "", false),
+				// Density always matches, as resources can be scaled
+				arguments("ldpi", "hdpi", true),
+				arguments("xxhdpi", "hdpi", true),
+				arguments("anydpi", "hdpi", true),
+				// Screen sizes larger than the device do not match
+				arguments("small", "large", true),
+				arguments("large", "large", true),
+				arguments("xlarge", "large", false),
+				arguments("long", "large-long", true),
+				arguments("long", "large-notlong", false),
+				arguments("sw600dp", "sw720dp", true),
+				arguments("sw800dp", "sw720dp", false),
+				arguments("w400dp-h700dp", "w411dp-h731dp", true),
+				arguments("h800dp", "w411dp-h731dp", false),
+				// Orientation
+				arguments("land", "land", true),
+				arguments("port", "land", false),
+				arguments("land", "", false),
+				// Platform versions newer than the device do not match
+				arguments("v21", "v30", true),
+				arguments("v31", "v30", false),
+				arguments("fr-land-v21", "fr-rCA-land-hdpi-v30", true),
+				arguments("fr-port-v21", "fr-rCA-land-hdpi-v30", false)
+		);
+	}
+
+	public static Stream<Arguments> getBetterCases() {
+		String device = "fr-rCA-land-hdpi-large-v30";
+		return Stream.of(
+				// Configuration, other configuration, device, whether the configuration is the better match
+				arguments("fr", "", device, true),
+				arguments("", "fr", device, false),
+				arguments("fr", "fr", device, false),
+				// Locale takes precedence over all the other qualifiers tested here
+				arguments("fr-rCA", "fr", device, true),
+				arguments("fr", "fr-rCA", device, false),
+				arguments("fr", "land-hdpi-large-v30", device, true),
+				arguments("land-hdpi-large-v30", "fr", device, false),
+				arguments("fr-large", "fr-rCA", device, false),
+				// Then smallest width, then screen size
+				arguments("sw600dp", "large", "sw720dp-large", true),
+				arguments("large", "sw600dp", "sw720dp-large", false),
+				arguments("sw720dp", "sw600dp", "sw720dp-large", true),
+				arguments("large", "land", device, true),
+				arguments("land", "large", device, false),
+				arguments("large", "normal", device, true),
+				arguments("normal", "", device, true),
+				arguments("", "normal", device, false),
+				arguments("small", "", device, false),
+				// Then orientation, which takes precedence over density
+				arguments("land", "hdpi", device, true),
+				arguments("hdpi", "land", device, false),
+				arguments("land", "v30", device, true),
+				// Then density, preferring exact densities then scaling down over scaling up
+				arguments("hdpi", "xhdpi", device, true),
+				arguments("hdpi", "mdpi", device, true),
+				arguments("xhdpi", "mdpi", device, true),
+				arguments("mdpi", "xhdpi", device, false),
+				arguments("xxhdpi", "mdpi", device, true),
+				arguments("ldpi", "mdpi", device, false),
+				arguments("", "ldpi", device, true),
+				arguments("anydpi", "hdpi", device, true),
+				arguments("hdpi", "anydpi", device, false),
+				// Then platform version, preferring the newest
+				arguments("v30", "v21", device, true),
+				arguments("v21", "", device, true),
+				arguments("", "v21", device, false),
+				// Without a device, the configuration defining the most important qualifier is better
+				arguments("fr", "land", null, true),
+				arguments("land", "fr", null, false),
+				arguments("land", "", null, true),
+				arguments("", "land", null, false),
+				arguments("hdpi", "", null, false)
+		);
+	}
+}
@@ -0,0 +1,94 @@
+package software.coley.androidres;
+
+import org.junit.jupiter.api.Test;
+import software.coley.android.xml.FlagTable;
+import software.coley.android.xml.SnapshotResourceProvider;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for decomposing flag values with {@link FlagTable}.
+ */
+public class FlagTableTests {
+	private static final FlagTable GRAVITY = new FlagTable(
+			new int[]{0x30, 0x50, 0x03, 0x05, 0x10, 0x70, 0x01, 0x11, 0x07, 0x77},
+			new String[]{"top", "bottom", "left", "right", "center_vertical", "fill_vertical",
+					"center_horizontal", "center", "fill_horizontal", "fill"});
+
+	@Test
+	void testGreedyComposite() {
+		// Flags with more bits set are preferred over the flags they are made up of
+		assertEquals("center", GRAVITY.getFlagNames(0x11));
+		assertEquals("fill", GRAVITY.getFlagNames(0x77));
+		assertEquals("fill_vertical", GRAVITY.getFlagNames(0x70));
+		assertEquals("center_horizontal", GRAVITY.getFlagNames(0x01));
+		assertEquals("center_vertical", GRAVITY.getFlagNames(0x10));
+
+		// Names are ordered by value, rather than by declaration or by how they were picked
+		assertEquals("left|fill_vertical", GRAVITY.getFlagNames(0x73));
+		assertEquals("right|fill_vertical", GRAVITY.getFlagNames(0x75));
+		assertEquals(10, GRAVITY.size());
+	}
+
+	@Test
+	void testDuplicateMasks() {
+		// Flags sharing a value are only named once, using the first declared name
+		FlagTable table = new FlagTable(new int[]{0x10, 0x02, 0x10, 0x01},
+				new String[]{"system", "signature", "privileged", "dangerous"});
+		assertEquals("system", table.getFlagNames(0x10));
+		assertEquals("signature|system", table.getFlagNames(0x12));
+		assertEquals("dangerous|signature|system", table.getFlagNames(0x13));
+	}
+
+	@Test
+	void testLeftoverBits() {
+		// Values with bits not belonging to any flag have no names, rather than the names of the known bits
+		assertNull(GRAVITY.getFlagNames(0x100));
+		assertNull(GRAVITY.getFlagNames(0x111));
+		assertNull(GRAVITY.getFlagNames(0x80000000));
+
+		// Zero is only named by a flag with a value of zero
+		assertNull(GRAVITY.getFlagNames(0));
+		FlagTable table = new FlagTable(new int[]{0x01, 0x00, 0x02}, new String[]{"a", "none", "b"});
+		assertEquals("none", table.getFlagNames(0));
+		assertEquals("a|b", table.getFlagNames(0x03));
+		assertNull(table.getFlagNames(0x04));
+		assertEquals(2, table.size());
+	}
+
+	@Test
+	void testMemoCollisions() {
+		// 0x01, 0x41 and 0x80 share a memo slot, so each lookup replaces the memoized names of the previous value
+		FlagTable table = new FlagTable(new int[]{0x01, 0x40}, new String[]{"a", "g"});
+		for (int i = 0; i < 3; i++) {
+			assertEquals("a", table.getFlagNames(0x01));
+			assertEquals("a|g", table.getFlagNames(0x41));
+			assertNull(table.getFlagNames(0x80));
+			assertEquals("a", table.getFlagNames(0x01));
+		}
+	}
+
+	@Test
+	void testMismatchedLength() {
+		assertThrows(IllegalArgumentException.class, () -> new FlagTable(new int[]{1, 2}, new String[]{"a"}));
+	}
+
+	@Test
+	void testProviders() {
+		// All providers decompose flag values the same way
+		AndroidResourceProviderImpl base = AndroidResourceProviderImpl.getAndroidBase();
+		SnapshotResourceProvider snapshot = new SnapshotResourceProvider(base.toSnapshot(30).toByteArray());
+		for (String attr : new String[]{"gravity", "protectionLevel", "configChanges"}) {
+			FlagTable table = snapshot.getResFlagTable(base.getAttrResId(attr));
+			assertNotNull(table);
+			for (int value : new int[]{0, 0x01, 0x11, 0x12, 0x30, 0x33, 0x77, 0x100, 0x800003, 0x40000000}) {
+				String expected = base.getResFlagNames(attr, value);
+				assertEquals(expected, table.getFlagNames(value));
+				assertEquals(expected, snapshot.getResFlagNames(attr, value));
+			}
+		}
+		assertEquals("center", base.getResFlagNames("gravity", 0x11));
+		assertNull(base.getResFlagNames("gravity", 0x40000000));
+		assertNull(snapshot.getResFlagTable(base.getAttrResId("orientation")));
+	}
+}
@@ -0,0 +1,85 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import org.junit.jupiter.api.Test;
+import software.coley.android.xml.AndroidFormatting;
+import software.coley.android.xml.XmlDecoder;
+
+import javax.annotation.Nonnull;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for formatting resource values, compared against the {@link DecimalFormat} and
+ * {@link String#format(String, Object...)} based formatting they replaced.
+ */
+public class FormattingTests {
+	private static final DecimalFormat DECIMAL_FORMAT =
+			new DecimalFormat("#.0000", DecimalFormatSymbols.getInstance(Locale.US));
+
+	@Test
+	void testDimension() {
+		forSampledValues(data -> assertEquals(oldValueString(oldValue(data)) +
+						AndroidFormatting.getComplexUnit(data & AndroidFormatting.COMPLEX_UNIT_MASK),
+				AndroidFormatting.appendDimension(new StringBuilder(), data).toString(), () -> hex(data)));
+	}
+
+	@Test
+	void testFraction() {
+		forSampledValues(data -> assertEquals(oldValueString(oldValue(data) * 100) +
+						AndroidFormatting.getFractionalUnit(data & AndroidFormatting.COMPLEX_UNIT_MASK),
+				AndroidFormatting.appendFraction(new StringBuilder(), data).toString(), () -> hex(data)));
+	}
+
+	@Test
+	void testHex() {
+		forSampledValues(data -> {
+			assertEquals(Integer.toHexString(data), AndroidFormatting.appendHex(new StringBuilder(), data).toString());
+			assertEquals(String.format("%08x", data), AndroidFormatting.appendHex(new StringBuilder(), data, 8).toString());
+		});
+	}
+
+	@Test
+	void testFloat() {
+		XmlDecoder decoder = new XmlDecoder(AndroidResourceProviderImpl.getAndroidBase(), null);
+		forSampledValues(data -> assertEquals(String.format(Locale.US, "%f", (float) data),
+				decoder.formatValue(BinaryResourceValue.Type.FLOAT, data, "value"), () -> hex(data)));
+	}
+
+	/**
+	 * @param action
+	 * 		Action to run for a sample of values across the whole {@code int} range, along with every combination
+	 * 		of unit and radix bits for values around zero and the limits of the mantissa.
+	 */
+	private static void forSampledValues(@Nonnull IntConsumer action) {
+		for (long value = Integer.MIN_VALUE; value <= Integer.MAX_VALUE; value += 16411)
+			action.accept((int) value);
+		int[] mantissas = {0, 1, 2, 3, 0x7F, 0x80, 0xFF, 0x100, 0x7FFF, 0x8000, 0xFFFF, 0x10000,
+				0x7FFFFF, 0x800000, 0x800001, 0xFFFFFE, 0xFFFFFF};
+		for (int mantissa : mantissas)
+			for (int low = 0; low <= 0xFF; low++)
+				action.accept(mantissa << AndroidFormatting.COMPLEX_MANTISSA_SHIFT | low);
+	}
+
+	private static double oldValue(int data) {
+		int multIndex = data >> AndroidFormatting.COMPLEX_RADIX_SHIFT & AndroidFormatting.COMPLEX_RADIX_MASK;
+		return (data & AndroidFormatting.COMPLEX_MANTISSA_MASK << AndroidFormatting.COMPLEX_MANTISSA_SHIFT) *
+				AndroidFormatting.RADIX_MULTS[multIndex];
+	}
+
+	@Nonnull
+	private static String oldValueString(double value) {
+		if (Double.compare(value, Math.floor(value)) == 0 && !Double.isInfinite(value))
+			return Integer.toString((int) value);
+		return DECIMAL_FORMAT.format(value);
+	}
+
+	@Nonnull
+	private static String hex(int data) {
+		return "0x" + Integer.toHexString(data);
+	}
+}
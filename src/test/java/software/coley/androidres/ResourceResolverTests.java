@@ -0,0 +1,116 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceResolver;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.TypeChunk;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ResourceResolver} against {@link ResourceTableBuilder#buildSample() the sample table}.
+ */
+public class ResourceResolverTests {
+	private static final ResourceTableChunk TABLE =
+			(ResourceTableChunk) new BinaryResourceFile(ResourceTableBuilder.buildSample()).getChunks().get(0);
+
+	@Test
+	void testResolveVariants() {
+		ResourceResolver resolver = new ResourceResolver(TABLE);
+
+		// Defined in both the default and 'fr' configurations
+		assertEquals(2, resolver.getVariantCount(0x7F010000));
+		assertEquals(Arrays.asList("Example", "Exemple"), strings(resolver.resolve(0x7F010000)));
+		assertEquals("Example", string(resolver.resolve(0x7F010000, 0)));
+		assertEquals("Exemple", string(resolver.resolve(0x7F010000, 1)));
+
+		// Defined in only one of the configurations
+		assertEquals(Arrays.asList("Titre"), strings(resolver.resolve(0x7F010001)));
+		assertNull(resolver.resolve(0x7F010001, 0));
+		assertEquals(Arrays.asList("Hello"), strings(resolver.resolve(0x7F010003)));
+		assertNull(resolver.resolve(0x7F010003, 1));
+
+		// Variants which do not fit in the output are skipped
+		TypeChunk.Entry[] output = new TypeChunk.Entry[1];
+		assertEquals(1, resolver.resolve(0x7F010000, output));
+		assertEquals("Example", string(output[0]));
+		assertEquals(0, resolver.resolve(0x7F010000, new TypeChunk.Entry[0]));
+	}
+
+	@Test
+	void testResolveComplex() {
+		ResourceResolver resolver = new ResourceResolver(TABLE);
+		List<TypeChunk.Entry> entries = resolver.resolve(0x7F020000);
+		assertEquals(1, entries.size());
+		TypeChunk.Entry style = entries.get(0);
+		assertEquals("AppTheme", style.key());
+		assertTrue(style.isComplex());
+		assertEquals(1, style.values().get(0x01010000).data());
+		assertEquals(0x11, style.values().get(0x01010001).data());
+	}
+
+	@Test
+	void testResolveCrossPackage() {
+		ResourceResolver resolver = new ResourceResolver(TABLE);
+
+		// Application resources referencing framework resources resolve in the framework package
+		TypeChunk.Entry confirm = resolver.resolve(0x7F010004, 0);
+		assertNotNull(confirm);
+		assertEquals(BinaryResourceValue.Type.REFERENCE, confirm.value().type());
+		int reference = confirm.value().data();
+		assertEquals(Arrays.asList("OK", "D'accord"), strings(resolver.resolve(reference)));
+
+		// The same type and entry ids in different packages are different resources
+		assertEquals(1, resolver.getVariantCount(0x01010000));
+		assertEquals("orientation", resolver.resolve(0x01010000, 0).key());
+		assertEquals(2, resolver.getVariantCount(0x7F010000));
+		assertEquals("app_name", resolver.resolve(0x7F010000, 0).key());
+	}
+
+	@Test
+	void testResolveMissing() {
+		ResourceResolver resolver = new ResourceResolver(TABLE);
+
+		// Missing entry in a defined type
+		assertEquals(2, resolver.getVariantCount(0x7F010002));
+		assertTrue(resolver.resolve(0x7F010002).isEmpty());
+		assertNull(resolver.resolve(0x7F010002, 0));
+		assertTrue(resolver.resolve(0x7F01FFFF).isEmpty());
+
+		// Missing types, including the invalid type id 0
+		for (int id : new int[]{0x7F030000, 0x7F000000, 0x7FFF0000, 0x01040000}) {
+			assertEquals(0, resolver.getVariantCount(id));
+			assertTrue(resolver.resolve(id).isEmpty());
+			assertNull(resolver.resolve(id, 0));
+			assertEquals(0, resolver.resolve(id, new TypeChunk.Entry[4]));
+		}
+
+		// Missing packages
+		for (int id : new int[]{0x00010000, 0x02010000, 0xFF010000}) {
+			assertEquals(0, resolver.getVariantCount(id));
+			assertTrue(resolver.resolve(id).isEmpty());
+		}
+
+		// Variants out of range
+		assertNull(resolver.resolve(0x7F010000, -1));
+		assertNull(resolver.resolve(0x7F010000, 2));
+	}
+
+	@Nonnull
+	private static List<String> strings(@Nonnull List<TypeChunk.Entry> entries) {
+		return entries.stream().map(ResourceResolverTests::string).collect(Collectors.toList());
+	}
+
+	@Nonnull
+	private static String string(@Nonnull TypeChunk.Entry entry) {
+		assertEquals(BinaryResourceValue.Type.STRING, entry.value().type());
+		return TABLE.getStringPool().getString(entry.value().data());
+	}
+}
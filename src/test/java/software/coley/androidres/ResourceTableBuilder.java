@@ -0,0 +1,444 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceConfiguration;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes {@code resources.arsc} tables for tests, as no real table is bundled with the samples.
+ * <p>
+ * Tables are written the same way as {@code aapt2} lays them out, but no validation is done,
+ * so tampered tables can be written by declaring invalid ids or counts.
+ */
+public class ResourceTableBuilder {
+	/** Key of the map value of an attribute, holding the types of values the attribute accepts. */
+	public static final int ATTR_TYPE = 0x01000000;
+	/** Type bit of an attribute accepting any kind of value. */
+	public static final int TYPE_ANY = 0xFFFF;
+	/** Type bit of an attribute accepting enum values. */
+	public static final int TYPE_ENUM = 1 << 16;
+	/** Type bit of an attribute accepting flag values. */
+	public static final int TYPE_FLAGS = 1 << 17;
+	private static final int NO_ENTRY = 0xFFFFFFFF;
+	private final List<String> strings = new ArrayList<>();
+	private final List<PackageBuilder> packages = new ArrayList<>();
+
+	/**
+	 * @return Table of a framework package {@code 0x01} and an application package {@code 0x7F} referencing it.
+	 * Both packages have strings in a default and a {@code fr} configuration, and the framework package has
+	 * an {@code orientation} enum attribute and a {@code gravity} flag attribute.
+	 */
+	@Nonnull
+	public static byte[] buildSample() {
+		BinaryResourceConfiguration fr = BinaryResourceConfiguration.builder().language("fr").build();
+		ResourceTableBuilder builder = new ResourceTableBuilder();
+		PackageBuilder android = builder.addPackage(0x01, "android")
+				.addTypeName(1, "attr")
+				.addTypeName(2, "id")
+				.addTypeName(3, "string");
+		String[] valueNames = {"horizontal", "vertical", "top", "bottom", "left", "right",
+				"center_vertical", "center_horizontal", "center"};
+		TypeBuilder ids = android.addType(2);
+		for (int i = 0; i < valueNames.length; i++)
+			ids.addValue(i, valueNames[i], BinaryResourceValue.Type.INT_BOOLEAN, 0);
+		android.addType(1)
+				.addAttr(0, "orientation", TYPE_ENUM, new int[]{0x01020000, 0x01020001}, new int[]{0, 1})
+				.addAttr(1, "gravity", TYPE_FLAGS,
+						new int[]{0x01020002, 0x01020003, 0x01020004, 0x01020005, 0x01020006, 0x01020007, 0x01020008},
+						new int[]{0x30, 0x50, 0x03, 0x05, 0x10, 0x01, 0x11});
+		android.addType(3).addString(0, "ok", "OK");
+		android.addType(3, fr).addString(0, "ok", "D'accord");
+
+		PackageBuilder app = builder.addPackage(0x7F, "com.example")
+				.addTypeName(1, "string")
+				.addTypeName(2, "style");
+		app.addType(1)
+				.addString(0, "app_name", "Example")
+				.addString(3, "hello", "Hello")
+				.addValue(4, "confirm", BinaryResourceValue.Type.REFERENCE, 0x01030000);
+		app.addType(1, fr)
+				.addString(0, "app_name", "Exemple")
+				.addString(1, "title", "Titre");
+		app.addType(2).addMap(0, "AppTheme", 0, new int[]{0x01010000, 0x01010001},
+				new BinaryResourceValue.Type[]{BinaryResourceValue.Type.INT_DEC, BinaryResourceValue.Type.INT_HEX},
+				new int[]{1, 0x11});
+		return builder.build();
+	}
+
+	/**
+	 * @param id
+	 * 		Package id, such as {@code 0x7F} for applications.
+	 * @param name
+	 * 		Package name.
+	 *
+	 * @return Builder of the package.
+	 */
+	@Nonnull
+	public PackageBuilder addPackage(int id, @Nonnull String name) {
+		PackageBuilder builder = new PackageBuilder(id, name);
+		packages.add(builder);
+		return builder;
+	}
+
+	/**
+	 * @return Table data.
+	 */
+	@Nonnull
+	public byte[] build() {
+		byte[] pool = stringPool(strings);
+		List<byte[]> packageData = new ArrayList<>();
+		int size = 12 + pool.length;
+		for (PackageBuilder builder : packages) {
+			byte[] data = builder.build();
+			packageData.add(data);
+			size += data.length;
+		}
+
+		ByteBuffer buffer = allocate(size);
+		buffer.putShort((short) 0x0002).putShort((short) 12).putInt(size).putInt(packages.size());
+		buffer.put(pool);
+		for (byte[] data : packageData)
+			buffer.put(data);
+		return buffer.array();
+	}
+
+	private int addString(@Nonnull String string) {
+		int index = strings.indexOf(string);
+		if (index >= 0)
+			return index;
+		strings.add(string);
+		return strings.size() - 1;
+	}
+
+	@Nonnull
+	private static ByteBuffer allocate(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Nonnull
+	private static byte[] stringPool(@Nonnull List<String> strings) {
+		return stringPool(strings, false);
+	}
+
+	/**
+	 * @param strings
+	 * 		Strings of the pool, in order.
+	 * @param sorted
+	 * 		{@code true} to set the sorted flag of the pool, whether or not the strings are sorted.
+	 *
+	 * @return UTF-8 string pool chunk data.
+	 */
+	@Nonnull
+	static byte[] stringPool(@Nonnull List<String> strings, boolean sorted) {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int[] offsets = new int[strings.size()];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = data.size();
+			byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+			writeLength(data, strings.get(i).length());
+			writeLength(data, bytes.length);
+			data.write(bytes, 0, bytes.length);
+			data.write(0);
+		}
+		while (data.size() % 4 != 0)
+			data.write(0);
+
+		int stringsStart = 28 + offsets.length * 4;
+		ByteBuffer buffer = allocate(stringsStart + data.size());
+		buffer.putShort((short) 0x0001).putShort((short) 28).putInt(buffer.capacity());
+		buffer.putInt(offsets.length).putInt(0).putInt(sorted ? 0x101 : 0x100).putInt(stringsStart).putInt(0);
+		for (int offset : offsets)
+			buffer.putInt(offset);
+		buffer.put(data.toByteArray());
+		return buffer.array();
+	}
+
+	private static void writeLength(@Nonnull ByteArrayOutputStream data, int length) {
+		if (length > 0x7F)
+			data.write(0x80 | (length >> 8));
+		data.write(length & 0xFF);
+	}
+
+	/**
+	 * Builder of a package in the table.
+	 */
+	public class PackageBuilder {
+		private final int id;
+		private final String name;
+		private final Map<Integer, String> typeNames = new TreeMap<>();
+		private final List<String> keys = new ArrayList<>();
+		private final List<TypeBuilder> types = new ArrayList<>();
+
+		private PackageBuilder(int id, @Nonnull String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		/**
+		 * @param typeId
+		 * 		Type id, starting at 1.
+		 * @param typeName
+		 * 		Type name, such as {@code attr}.
+		 *
+		 * @return This builder.
+		 */
+		@Nonnull
+		public PackageBuilder addTypeName(int typeId, @Nonnull String typeName) {
+			typeNames.put(typeId, typeName);
+			return this;
+		}
+
+		/**
+		 * @param typeId
+		 * 		Type id, which does not need to have a name for tampered tables.
+		 * @param configuration
+		 * 		Configuration of the entries.
+		 *
+		 * @return Builder of the entries of the type in the configuration.
+		 */
+		@Nonnull
+		public TypeBuilder addType(int typeId, @Nonnull BinaryResourceConfiguration configuration) {
+			TypeBuilder builder = new TypeBuilder(this, typeId, configuration);
+			types.add(builder);
+			return builder;
+		}
+
+		/**
+		 * @param typeId
+		 * 		Type id, which does not need to have a name for tampered tables.
+		 *
+		 * @return Builder of the entries of the type in the default configuration.
+		 */
+		@Nonnull
+		public TypeBuilder addType(int typeId) {
+			return addType(typeId, BinaryResourceConfiguration.builder().build());
+		}
+
+		private int addKey(@Nonnull String key) {
+			int index = keys.indexOf(key);
+			if (index >= 0)
+				return index;
+			keys.add(key);
+			return keys.size() - 1;
+		}
+
+		@Nonnull
+		private byte[] build() {
+			// Type names are indexed by their id, so gaps are filled with placeholder names
+			List<String> typePoolNames = new ArrayList<>();
+			int maxTypeId = typeNames.isEmpty() ? 0 : ((TreeMap<Integer, String>) typeNames).lastKey();
+			for (int i = 1; i <= maxTypeId; i++)
+				typePoolNames.add(typeNames.getOrDefault(i, "unused" + i));
+			byte[] typePool = stringPool(typePoolNames);
+			byte[] keyPool = stringPool(keys);
+
+			// Each type is preceded by its spec the first time it is seen
+			ByteArrayOutputStream typeData = new ByteArrayOutputStream();
+			Map<Integer, Integer> specCounts = new TreeMap<>();
+			for (TypeBuilder type : types)
+				specCounts.merge(type.typeId, type.getEntryCount(), Math::max);
+			List<Integer> writtenSpecs = new ArrayList<>();
+			for (TypeBuilder type : types) {
+				if (!writtenSpecs.contains(type.typeId)) {
+					writtenSpecs.add(type.typeId);
+					int specCount = Math.min(specCounts.get(type.typeId), 0x10000);
+					ByteBuffer spec = allocate(16 + specCount * 4);
+					spec.putShort((short) 0x0202).putShort((short) 16).putInt(spec.capacity());
+					spec.put((byte) type.typeId).put((byte) 0).putShort((short) 0).putInt(specCount);
+					typeData.write(spec.array(), 0, spec.capacity());
+				}
+				byte[] data = type.build();
+				typeData.write(data, 0, data.length);
+			}
+
+			int headerSize = 288;
+			ByteBuffer buffer = allocate(headerSize + typePool.length + keyPool.length + typeData.size());
+			buffer.putShort((short) 0x0200).putShort((short) headerSize).putInt(buffer.capacity());
+			buffer.putInt(id);
+			byte[] nameBytes = name.getBytes(StandardCharsets.UTF_16LE);
+			buffer.put(nameBytes, 0, Math.min(nameBytes.length, 254));
+			buffer.position(12 + 256);
+			buffer.putInt(headerSize).putInt(typePoolNames.size());
+			buffer.putInt(headerSize + typePool.length).putInt(keys.size());
+			buffer.putInt(0);
+			buffer.put(typePool).put(keyPool).put(typeData.toByteArray());
+			return buffer.array();
+		}
+	}
+
+	/**
+	 * Builder of the entries of a type in a single configuration.
+	 */
+	public class TypeBuilder {
+		private final PackageBuilder packageBuilder;
+		private final int typeId;
+		private final BinaryResourceConfiguration configuration;
+		private final Map<Integer, byte[]> entries = new TreeMap<>();
+		private int entryCount = -1;
+
+		private TypeBuilder(@Nonnull PackageBuilder packageBuilder, int typeId,
+							@Nonnull BinaryResourceConfiguration configuration) {
+			this.packageBuilder = packageBuilder;
+			this.typeId = typeId;
+			this.configuration = configuration;
+		}
+
+		/**
+		 * @param entryCount
+		 * 		Entry count to declare in the type, rather than the number of entries added.
+		 * 		Only as many entry offsets as there are added entries are written when the declared count is larger.
+		 *
+		 * @return This builder.
+		 */
+		@Nonnull
+		public TypeBuilder setEntryCount(int entryCount) {
+			this.entryCount = entryCount;
+			return this;
+		}
+
+		/**
+		 * @param index
+		 * 		Entry index.
+		 * @param key
+		 * 		Entry name.
+		 * @param type
+		 * 		Value type.
+		 * @param data
+		 * 		Value data.
+		 *
+		 * @return This builder.
+		 */
+		@Nonnull
+		public TypeBuilder addValue(int index, @Nonnull String key, @Nonnull BinaryResourceValue.Type type, int data) {
+			ByteBuffer buffer = allocate(16);
+			buffer.putShort((short) 8).putShort((short) 0).putInt(packageBuilder.addKey(key));
+			putValue(buffer, type, data);
+			entries.put(index, buffer.array());
+			return this;
+		}
+
+		/**
+		 * @param index
+		 * 		Entry index.
+		 * @param key
+		 * 		Entry name.
+		 * @param value
+		 * 		String value, added to the table's string pool.
+		 *
+		 * @return This builder.
+		 */
+		@Nonnull
+		public TypeBuilder addString(int index, @Nonnull String key, @Nonnull String value) {
+			return addValue(index, key, BinaryResourceValue.Type.STRING, ResourceTableBuilder.this.addString(value));
+		}
+
+		/**
+		 * @param index
+		 * 		Entry index.
+		 * @param key
+		 * 		Entry name.
+		 * @param parent
+		 * 		Resource id of the parent entry, or {@code 0} for none.
+		 * @param names
+		 * 		Keys of the map values.
+		 * @param types
+		 * 		Types of the map values.
+		 * @param data
+		 * 		Data of the map values.
+		 *
+		 * @return This builder.
+		 */
+		@Nonnull
+		public TypeBuilder addMap(int index, @Nonnull String key, int parent, @Nonnull int[] names,
+								  @Nonnull BinaryResourceValue.Type[] types, @Nonnull int[] data) {
+			ByteBuffer buffer = allocate(16 + names.length * 12);
+			buffer.putShort((short) 16).putShort((short) 1).putInt(packageBuilder.addKey(key));
+			buffer.putInt(parent).putInt(names.length);
+			for (int i = 0; i < names.length; i++) {
+				buffer.putInt(names[i]);
+				putValue(buffer, types[i], data[i]);
+			}
+			entries.put(index, buffer.array());
+			return this;
+		}
+
+		/**
+		 * @param index
+		 * 		Entry index.
+		 * @param key
+		 * 		Attribute name.
+		 * @param format
+		 * 		Types of values the attribute accepts, such as {@link #TYPE_FLAGS}.
+		 * @param valueIds
+		 * 		Resource ids of the names of the attribute's enum or flag values.
+		 * @param values
+		 * 		Enum or flag values.
+		 *
+		 * @return This builder.
+		 */
+		@Nonnull
+		public TypeBuilder addAttr(int index, @Nonnull String key, int format, @Nonnull int[] valueIds,
+								   @Nonnull int[] values) {
+			int[] names = new int[valueIds.length + 1];
+			BinaryResourceValue.Type[] types = new BinaryResourceValue.Type[names.length];
+			int[] data = new int[names.length];
+			names[0] = ATTR_TYPE;
+			types[0] = BinaryResourceValue.Type.INT_DEC;
+			data[0] = format;
+			for (int i = 0; i < valueIds.length; i++) {
+				names[i + 1] = valueIds[i];
+				types[i + 1] = (format & TYPE_FLAGS) != 0 ? BinaryResourceValue.Type.INT_HEX : BinaryResourceValue.Type.INT_DEC;
+				data[i + 1] = values[i];
+			}
+			return addMap(index, key, 0, names, types, data);
+		}
+
+		private int getEntryCount() {
+			if (entryCount >= 0)
+				return entryCount;
+			return entries.isEmpty() ? 0 : ((TreeMap<Integer, byte[]>) entries).lastKey() + 1;
+		}
+
+		@Nonnull
+		private byte[] build() {
+			byte[] config = configuration.toByteArray();
+			int declaredCount = getEntryCount();
+			int offsetCount = entries.isEmpty() ? 0 : Math.min(declaredCount, ((TreeMap<Integer, byte[]>) entries).lastKey() + 1);
+			int[] offsets = new int[offsetCount];
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			for (int i = 0; i < offsetCount; i++) {
+				byte[] entry = entries.get(i);
+				if (entry == null) {
+					offsets[i] = NO_ENTRY;
+				} else {
+					offsets[i] = data.size();
+					data.write(entry, 0, entry.length);
+				}
+			}
+
+			int headerSize = 20 + config.length;
+			int entriesStart = headerSize + offsetCount * 4;
+			ByteBuffer buffer = allocate(entriesStart + data.size());
+			buffer.putShort((short) 0x0201).putShort((short) headerSize).putInt(buffer.capacity());
+			buffer.put((byte) typeId).put((byte) 0).putShort((short) 0);
+			buffer.putInt(declaredCount).putInt(entriesStart).put(config);
+			for (int offset : offsets)
+				buffer.putInt(offset);
+			buffer.put(data.toByteArray());
+			return buffer.array();
+		}
+
+		private void putValue(@Nonnull ByteBuffer buffer, @Nonnull BinaryResourceValue.Type type, int data) {
+			buffer.putShort((short) 8).put((byte) 0).put(type.code()).putInt(data);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.PackageChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for writing parsed models back to their binary form.
+ */
+public class SerializationTests {
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getNormalSamples")
+	void testRoundTrip(Path path) throws IOException {
+		// Regular files should be written back exactly as they were read
+		byte[] bytes = Files.readAllBytes(path);
+		assertArrayEquals(bytes, new BinaryResourceFile(bytes).toByteArray());
+		assertArrayEquals(bytes, new BinaryResourceFile(bytes, true).toByteArray());
+	}
+
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getJankySamples")
+	void testRoundTripJanky(Path path) throws IOException {
+		// Tampered files are normalized when written, after which they should be written back exactly
+		byte[] normalized = new BinaryResourceFile(Files.readAllBytes(path)).toByteArray();
+		assertArrayEquals(normalized, new BinaryResourceFile(normalized).toByteArray());
+	}
+
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.XmlDecodingTests#getNormalSamples",
+			"software.coley.androidres.XmlDecodingTests#getJankySamples"})
+	void testSerializedSize(Path path) throws IOException {
+		assertSerializedSize(Files.readAllBytes(path));
+	}
+
+	@Test
+	void testSerializedSizeTable() throws IOException {
+		assertSerializedSize(ResourceTableBuilder.buildSample());
+	}
+
+	@Test
+	void testRoundTripTable() throws IOException {
+		byte[] bytes = ResourceTableBuilder.buildSample();
+		assertArrayEquals(bytes, new BinaryResourceFile(bytes).toByteArray());
+		assertArrayEquals(bytes, new BinaryResourceFile(bytes, true).toByteArray());
+	}
+
+	@Test
+	void testFrozenTable() throws IOException {
+		// Package contents can only be modified until the table is frozen, which does not change how it is written
+		byte[] bytes = ResourceTableBuilder.buildSample();
+		BinaryResourceFile file = new BinaryResourceFile(bytes);
+		PackageChunk pkg = ((ResourceTableChunk) file.getChunks().get(0)).getPackages().iterator().next();
+		int typeCount = pkg.getTypeChunks().size();
+		assertFalse(pkg.getTypeChunks(1).isEmpty());
+
+		file.freeze();
+		assertEquals(typeCount, pkg.getTypeChunks().size());
+		assertFalse(pkg.getTypeChunks(1).isEmpty());
+		assertThrows(UnsupportedOperationException.class, () -> pkg.getTypeChunks().clear());
+		assertThrows(UnsupportedOperationException.class, () -> pkg.getTypeChunks(1).clear());
+		assertThrows(UnsupportedOperationException.class, () -> pkg.getTypeSpecChunks().clear());
+		assertArrayEquals(bytes, file.toByteArray());
+	}
+
+	/**
+	 * @param bytes
+	 * 		Binary resource file to parse.
+	 */
+	private static void assertSerializedSize(@Nonnull byte[] bytes) throws IOException {
+		// Sizes are computed without writing, so they must agree with what is actually written
+		for (boolean lazy : new boolean[]{false, true}) {
+			for (boolean shrink : new boolean[]{false, true}) {
+				for (Chunk chunk : new BinaryResourceFile(bytes, lazy).getChunks())
+					assertEquals(chunk.toByteArray(shrink).length, chunk.serializedSize(shrink),
+							"lazy=" + lazy + ", shrink=" + shrink);
+			}
+		}
+	}
+}
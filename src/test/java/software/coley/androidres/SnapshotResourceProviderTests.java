@@ -0,0 +1,94 @@
+package software.coley.androidres;
+
+import org.junit.jupiter.api.Test;
+import software.coley.android.xml.ResourceSnapshotWriter;
+import software.coley.android.xml.SnapshotResourceProvider;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for reading snapshots with {@link SnapshotResourceProvider}.
+ */
+public class SnapshotResourceProviderTests {
+	/** Header offsets of the record counts. */
+	private static final int[] COUNTS = {12, 28, 44};
+	/** Header offsets of the hash index sizes. */
+	private static final int[] INDEX_SIZES = {24, 40};
+	/** Header offsets of the section offsets. */
+	private static final int[] OFFSETS = {16, 20, 32, 36, 48, 52, 56};
+
+	@Test
+	void testValid() {
+		SnapshotResourceProvider provider = new SnapshotResourceProvider(sample());
+		assertEquals(30, provider.getApiLevel());
+		assertEquals("attr/gravity", provider.getResName(0x010100AF));
+		assertEquals(0x010100AF, provider.getResId("attr/gravity"));
+		assertEquals("top", provider.getResFlagNames("gravity", 0x30));
+		assertEquals("top", provider.getResFlagNames(0x010100AF, 0x30));
+		assertEquals("horizontal", provider.getResEnumName(0x010100C4, 0));
+	}
+
+	@Test
+	void testTruncated() {
+		byte[] data = sample();
+		assertThrows(IllegalArgumentException.class, () -> new SnapshotResourceProvider(new byte[0]));
+		assertThrows(IllegalArgumentException.class, () -> new SnapshotResourceProvider(Arrays.copyOf(data, 40)));
+		int stringsOffset = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt(56);
+		assertThrows(IllegalArgumentException.class,
+				() -> new SnapshotResourceProvider(Arrays.copyOf(data, stringsOffset - 1)));
+	}
+
+	@Test
+	void testInvalidCounts() {
+		for (int offset : COUNTS)
+			for (int count : new int[]{-1, Integer.MIN_VALUE, 0x10000000, Integer.MAX_VALUE})
+				assertInvalid(offset, count);
+	}
+
+	@Test
+	void testInvalidIndexSizes() {
+		// Sizes must be non-zero powers of two, with at least one empty slot
+		for (int offset : INDEX_SIZES)
+			for (int size : new int[]{0, -1, 1, 3, 6, Integer.MIN_VALUE, 0x40000000})
+				assertInvalid(offset, size);
+	}
+
+	@Test
+	void testInvalidOffsets() {
+		int limit = sample().length;
+		for (int offset : OFFSETS)
+			for (int value : new int[]{-1, 0, 4, limit + 1, Integer.MIN_VALUE, Integer.MAX_VALUE})
+				assertInvalid(offset, value);
+	}
+
+	/**
+	 * @param headerOffset
+	 * 		Offset of the header field to tamper with.
+	 * @param value
+	 * 		Value to write to the field.
+	 */
+	private static void assertInvalid(int headerOffset, int value) {
+		byte[] data = sample();
+		ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(headerOffset, value);
+		assertThrows(IllegalArgumentException.class, () -> new SnapshotResourceProvider(data),
+				() -> "Header offset " + headerOffset + " = " + value);
+	}
+
+	@Nonnull
+	private static byte[] sample() {
+		return new ResourceSnapshotWriter(30)
+				.addName(0x010100AF, "attr/gravity")
+				.addName(0x010100C4, "attr/orientation")
+				.addFlag("gravity", "top", 0x30)
+				.addFlag("gravity", "bottom", 0x50)
+				.addEnum("orientation", "horizontal", 0)
+				.addEnum("orientation", "vertical", 1)
+				.toByteArray();
+	}
+}
@@ -0,0 +1,103 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for looking up strings in string pools.
+ */
+public class StringPoolTests {
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testIndexOfUnsorted(boolean lazy) {
+		StringPoolChunk pool = pool(lazy, false, "b", "a", "c", "a");
+		assertFalse(pool.isSorted());
+		assertEquals(0, pool.indexOf("b"));
+		assertEquals(1, pool.indexOf("a"));
+		assertEquals(2, pool.indexOf("c"));
+		assertEquals(-1, pool.indexOf("d"));
+		assertEquals(-1, pool.indexOf(""));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testIndexOfSorted(boolean lazy) {
+		// Sorted pools are binary searched, which must step back to the first of several equal strings
+		StringPoolChunk pool = pool(lazy, true, "a", "b", "b", "b", "b", "b", "b", "c", "d", "d");
+		assertTrue(pool.isSorted());
+		assertEquals(0, pool.indexOf("a"));
+		assertEquals(1, pool.indexOf("b"));
+		assertEquals(7, pool.indexOf("c"));
+		assertEquals(8, pool.indexOf("d"));
+		assertEquals(-1, pool.indexOf(""));
+		assertEquals(-1, pool.indexOf("bb"));
+		assertEquals(-1, pool.indexOf("e"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testIndexOfSortedNonAscii(boolean lazy) {
+		// Pools are sorted by UTF-16 code unit, as String.compareTo orders them
+		StringPoolChunk pool = pool(lazy, true, "Z", "a", "\u00e9", "\u4e2d");
+		assertEquals(0, pool.indexOf("Z"));
+		assertEquals(1, pool.indexOf("a"));
+		assertEquals(2, pool.indexOf("\u00e9"));
+		assertEquals(3, pool.indexOf("\u4e2d"));
+		assertEquals(-1, pool.indexOf("e"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testIndexOfLyingSortedFlag(boolean lazy) {
+		// Tampered pools may claim to be sorted when they are not, which must not break lookups
+		StringPoolChunk pool = pool(lazy, true, "c", "a", "b", "a", "c");
+		assertTrue(pool.isSorted());
+		assertEquals(0, pool.indexOf("c"));
+		assertEquals(1, pool.indexOf("a"));
+		assertEquals(2, pool.indexOf("b"));
+		assertEquals(-1, pool.indexOf("d"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testIndexOfSortedWithoutFlag(boolean lazy) {
+		StringPoolChunk pool = pool(lazy, false, "a", "a", "b", "c");
+		assertFalse(pool.isSorted());
+		assertEquals(0, pool.indexOf("a"));
+		assertEquals(2, pool.indexOf("b"));
+		assertEquals(3, pool.indexOf("c"));
+		assertEquals(-1, pool.indexOf("d"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testIndexOfEmpty(boolean lazy) {
+		for (boolean sorted : new boolean[]{false, true})
+			assertEquals(-1, pool(lazy, sorted).indexOf("a"));
+	}
+
+	/**
+	 * @param lazy
+	 * 		{@code true} to decode strings on demand.
+	 * @param sorted
+	 * 		{@code true} to set the sorted flag of the pool.
+	 * @param strings
+	 * 		Strings of the pool, in order.
+	 *
+	 * @return Parsed pool.
+	 */
+	@Nonnull
+	private static StringPoolChunk pool(boolean lazy, boolean sorted, @Nonnull String... strings) {
+		byte[] data = ResourceTableBuilder.stringPool(Arrays.asList(strings), sorted);
+		return (StringPoolChunk) new BinaryResourceFile(data, lazy).getChunks().get(0);
+	}
+}
@@ -1,18 +1,53 @@
 package software.coley.androidres;
 
 import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlAttribute;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlCdataChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlEndElementChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlNamespaceChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlNamespaceStartChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlResourceMapChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlStartElementChunk;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.android.xml.BinaryXmlReader;
+import software.coley.android.xml.SnapshotResourceProvider;
+import software.coley.android.xml.XmlBatchDecoder;
 import software.coley.android.xml.XmlDecoder;
 
 import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * Tests showcasing XML decoding capabilities, even with tampered inputs.
  *
@@ -36,6 +71,313 @@ public class XmlDecodingTests {
 		printDecodedXml(path);
 	}
 
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testMapped(Path path) throws IOException {
+		// Parsing from a memory-mapped buffer should yield the same model as parsing from a byte[]
+		String expected = XmlDecoder.decode(new BinaryResourceFile(Files.readAllBytes(path)), ANDROID_BASE, null);
+		String actual = XmlDecoder.decode(BinaryResourceFile.open(path), ANDROID_BASE, null);
+		assertEquals(expected, actual);
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testLazy(Path path) throws IOException {
+		// Deferring payload decoding should not change the decoded output
+		byte[] bytes = Files.readAllBytes(path);
+		String expected = XmlDecoder.decode(new BinaryResourceFile(bytes), ANDROID_BASE, null);
+		String actual = XmlDecoder.decode(new BinaryResourceFile(bytes, true), ANDROID_BASE, null);
+		assertEquals(expected, actual);
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testParallel(Path path) throws IOException {
+		// Decoding payloads concurrently should not change the decoded output
+		byte[] bytes = Files.readAllBytes(path);
+		String expected = XmlDecoder.decode(new BinaryResourceFile(bytes), ANDROID_BASE, null);
+		String actual = XmlDecoder.decode(new BinaryResourceFile(bytes, ForkJoinPool.commonPool()), ANDROID_BASE, null);
+		assertEquals(expected, actual);
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testFrozen(Path path) throws IOException {
+		// A frozen model should be safe to decode from many threads at once
+		byte[] bytes = Files.readAllBytes(path);
+		String expected = XmlDecoder.decode(new BinaryResourceFile(bytes), ANDROID_BASE, null);
+		BinaryResourceFile shared = new BinaryResourceFile(bytes, true).freeze();
+		List<String> actual = IntStream.range(0, 16).parallel()
+				.mapToObj(i -> XmlDecoder.decode(shared, ANDROID_BASE, null))
+				.collect(Collectors.toList());
+		assertEquals(Collections.nCopies(16, expected), actual);
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testStreaming(Path path) throws IOException {
+		// Streaming to a writer or output stream should yield the same output as decoding to a string
+		BinaryResourceFile binaryResource = new BinaryResourceFile(Files.readAllBytes(path));
+		String expected = XmlDecoder.decode(binaryResource, ANDROID_BASE, null);
+		StringWriter writer = new StringWriter();
+		XmlDecoder.decode(binaryResource, ANDROID_BASE, null, writer);
+		assertEquals(expected, writer.toString());
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		XmlDecoder.decode(binaryResource, ANDROID_BASE, null, stream);
+		assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testSnapshot(Path path) throws IOException {
+		// A provider loaded from a snapshot should yield the same output as the provider it was written from
+		SnapshotResourceProvider snapshot = new SnapshotResourceProvider(ANDROID_BASE.toSnapshot(30).toByteArray());
+		BinaryResourceFile binaryResource = new BinaryResourceFile(Files.readAllBytes(path));
+		String expected = XmlDecoder.decode(binaryResource, ANDROID_BASE, null);
+		String actual = XmlDecoder.decode(binaryResource, snapshot, null);
+		assertEquals(expected, actual);
+		assertEquals(30, snapshot.getApiLevel());
+	}
+
+	@Test
+	void testBatch() throws Exception {
+		// Decoding all samples as a batch should yield the same output as decoding them one at a time
+		List<Path> paths = Stream.concat(getNormalSamples(), getJankySamples())
+				.map(arguments -> (Path) arguments.get()[0])
+				.collect(Collectors.toList());
+		Map<Path, String> decoded = new ConcurrentHashMap<>();
+		Map<Path, Throwable> failures = new ConcurrentHashMap<>();
+		ExecutorService executor = XmlBatchDecoder.newDefaultExecutor();
+		try {
+			new XmlBatchDecoder(ANDROID_BASE, null, executor).decodePaths(paths, new XmlBatchDecoder.Callback<Path>() {
+				@Override
+				public void onDecoded(Path key, @Nonnull String xml) {
+					decoded.put(key, xml);
+				}
+
+				@Override
+				public void onFailure(Path key, @Nonnull Throwable error) {
+					failures.put(key, error);
+				}
+			}).get();
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(Collections.emptyMap(), failures);
+		assertEquals(paths.size(), decoded.size());
+		for (Path path : paths)
+			assertEquals(XmlDecoder.decode(new BinaryResourceFile(Files.readAllBytes(path)), ANDROID_BASE, null),
+					decoded.get(path));
+	}
+
+	@Test
+	void testBatchFailures() throws Exception {
+		// Errors of a document are reported to the callback, and do not stop other documents being decoded
+		Path path = getNormalSamples().map(arguments -> (Path) arguments.get()[0]).findFirst().get();
+		Map<String, XmlBatchDecoder.Source> inputs = new LinkedHashMap<>();
+		inputs.put("io", () -> {
+			throw new IOException("unreadable");
+		});
+		inputs.put("error", () -> {
+			throw new AssertionError("broken");
+		});
+		inputs.put("valid", XmlBatchDecoder.Source.of(path));
+		Map<String, String> decoded = new ConcurrentHashMap<>();
+		Map<String, Throwable> failures = new ConcurrentHashMap<>();
+		new XmlBatchDecoder(ANDROID_BASE, null, Runnable::run).decode(inputs, new XmlBatchDecoder.Callback<String>() {
+			@Override
+			public void onDecoded(String key, @Nonnull String xml) {
+				decoded.put(key, xml);
+			}
+
+			@Override
+			public void onFailure(String key, @Nonnull Throwable error) {
+				failures.put(key, error);
+			}
+		}).get();
+		assertEquals(Collections.singleton("valid"), decoded.keySet());
+		assertTrue(failures.get("io") instanceof IOException);
+		assertTrue(failures.get("error") instanceof AssertionError);
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testPullReader(Path path) throws IOException {
+		assertPullReaderEvents(Files.readAllBytes(path));
+	}
+
+	@Test
+	void testPullReaderCdata() {
+		// None of the samples hold character data, so a document with some is built here
+		List<String> strings = Arrays.asList("text", "http://schemas.android.com/apk/res/android", "android",
+				"root", "Hello", "World");
+		byte[] pool = ResourceTableBuilder.stringPool(strings, false);
+		ByteBuffer buffer = ByteBuffer.allocate(8 + pool.length + 12 + 24 + 56 + 28 + 24 + 24)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putShort((short) 0x0003).putShort((short) 8).putInt(buffer.capacity());
+		buffer.put(pool);
+		// Resource map, naming the attribute at string 0 'android:text'
+		buffer.putShort((short) 0x0180).putShort((short) 8).putInt(12).putInt(0x0101014F);
+		// Start namespace, with the prefix and URI
+		buffer.putShort((short) 0x0100).putShort((short) 16).putInt(24).putInt(1).putInt(-1).putInt(2).putInt(1);
+		// Start element with a single string attribute
+		buffer.putShort((short) 0x0102).putShort((short) 16).putInt(56).putInt(2).putInt(-1);
+		buffer.putInt(-1).putInt(3).putShort((short) 20).putShort((short) 20).putShort((short) 1)
+				.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+		buffer.putInt(1).putInt(0).putInt(4).putShort((short) 8).put((byte) 0).put((byte) 0x03).putInt(4);
+		// Character data, with an undefined typed value
+		buffer.putShort((short) 0x0104).putShort((short) 16).putInt(28).putInt(3).putInt(-1);
+		buffer.putInt(5).putShort((short) 8).put((byte) 0).put((byte) 0x00).putInt(0);
+		// End element and end namespace
+		buffer.putShort((short) 0x0103).putShort((short) 16).putInt(24).putInt(4).putInt(-1).putInt(-1).putInt(3);
+		buffer.putShort((short) 0x0101).putShort((short) 16).putInt(24).putInt(5).putInt(-1).putInt(2).putInt(1);
+
+		List<String> events = assertPullReaderEvents(buffer.array());
+		assertEquals(Arrays.asList(
+				"START_NAMESPACE android=http://schemas.android.com/apk/res/android line 1",
+				"START_ELEMENT {}root line 2 depth 1\n" +
+						"  {http://schemas.android.com/apk/res/android}text #0 @0101014f=Hello STRING 0x00000004",
+				"CDATA World line 3",
+				"END_ELEMENT {}root line 4 depth 1",
+				"END_NAMESPACE android=http://schemas.android.com/apk/res/android line 5",
+				"END_DOCUMENT"), events);
+	}
+
+	/**
+	 * Checks the pull reader produces the same events as the chunk model, in document order.
+	 *
+	 * @param bytes
+	 * 		Binary XML document.
+	 *
+	 * @return Descriptions of the events of the document.
+	 */
+	@Nonnull
+	private static List<String> assertPullReaderEvents(@Nonnull byte[] bytes) {
+		List<String> expected = new ArrayList<>();
+		for (Chunk chunk : new BinaryResourceFile(bytes).getChunks())
+			if (chunk instanceof XmlChunk)
+				addModelEvents((XmlChunk) chunk, expected);
+		expected.add("END_DOCUMENT");
+
+		List<String> actual = new ArrayList<>();
+		BinaryXmlReader reader = new BinaryXmlReader(bytes);
+		while (reader.hasNext())
+			actual.add(describeEvent(reader, reader.next()));
+		assertEquals(expected, actual);
+		assertEquals(0, reader.getDepth());
+		assertThrows(NoSuchElementException.class, reader::next);
+		return actual;
+	}
+
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testPullReaderStopEarly(Path path) throws IOException {
+		// Readers can be abandoned at any point, such as once the root element has been read
+		byte[] bytes = Files.readAllBytes(path);
+		List<String> expected = new ArrayList<>();
+		for (Chunk chunk : new BinaryResourceFile(bytes).getChunks())
+			if (chunk instanceof XmlChunk)
+				addModelEvents((XmlChunk) chunk, expected);
+		int root = 0;
+		while (root < expected.size() && !expected.get(root).startsWith("START_ELEMENT"))
+			root++;
+
+		BinaryXmlReader reader = new BinaryXmlReader(bytes);
+		for (int i = 0; i <= root && i < expected.size(); i++)
+			assertEquals(expected.get(i), describeEvent(reader, reader.next()));
+		if (root < expected.size()) {
+			assertTrue(reader.hasNext());
+			assertEquals(BinaryXmlReader.Event.START_ELEMENT, reader.getEvent());
+			assertEquals(1, reader.getDepth());
+		}
+	}
+
+	/**
+	 * @param xml
+	 * 		XML chunk of a document.
+	 * @param events
+	 * 		List to add descriptions of the events of the document to, in the format of {@link #describeEvent}.
+	 */
+	private static void addModelEvents(@Nonnull XmlChunk xml, @Nonnull List<String> events) {
+		XmlResourceMapChunk resourceMap = null;
+		for (Chunk chunk : xml.getChunks().values())
+			if (chunk instanceof XmlResourceMapChunk)
+				resourceMap = (XmlResourceMapChunk) chunk;
+
+		int depth = 0;
+		for (Chunk chunk : new TreeMap<>(xml.getChunks()).values()) {
+			if (chunk instanceof XmlNamespaceChunk) {
+				XmlNamespaceChunk namespace = (XmlNamespaceChunk) chunk;
+				String event = chunk instanceof XmlNamespaceStartChunk ? "START_NAMESPACE" : "END_NAMESPACE";
+				events.add(event + " " + namespace.getPrefix() + "=" + namespace.getUri() +
+						" line " + namespace.getLineNumber());
+			} else if (chunk instanceof XmlStartElementChunk) {
+				XmlStartElementChunk element = (XmlStartElementChunk) chunk;
+				StringBuilder sb = new StringBuilder("START_ELEMENT {").append(element.getNamespace()).append('}')
+						.append(element.getName()).append(" line ").append(element.getLineNumber())
+						.append(" depth ").append(++depth);
+				for (XmlAttribute attribute : element.getAttributes()) {
+					int resId = resourceMap == null ? 0 : resourceMap.getRawResourceId(attribute.nameIndex());
+					sb.append("\n  {").append(attribute.namespace()).append('}').append(attribute.name())
+							.append(" #").append(attribute.nameIndex())
+							.append(String.format(" @%08x", resId))
+							.append("=").append(attribute.rawValue())
+							.append(" ").append(attribute.typedValue().type())
+							.append(String.format(" 0x%08x", attribute.typedValue().data()));
+				}
+				events.add(sb.toString());
+			} else if (chunk instanceof XmlEndElementChunk) {
+				XmlEndElementChunk element = (XmlEndElementChunk) chunk;
+				events.add("END_ELEMENT {" + element.getNamespace() + "}" + element.getName() +
+						" line " + element.getLineNumber() + " depth " + depth--);
+			} else if (chunk instanceof XmlCdataChunk) {
+				XmlCdataChunk cdata = (XmlCdataChunk) chunk;
+				events.add("CDATA " + cdata.getRawValue() + " line " + cdata.getLineNumber());
+			}
+		}
+	}
+
+	/**
+	 * @param reader
+	 * 		Reader positioned on an event.
+	 * @param event
+	 * 		Current event of the reader.
+	 *
+	 * @return Description of the event, including the attributes of elements.
+	 */
+	@Nonnull
+	private static String describeEvent(@Nonnull BinaryXmlReader reader, @Nonnull BinaryXmlReader.Event event) {
+		assertEquals(event, reader.getEvent());
+		switch (event) {
+			case START_NAMESPACE:
+			case END_NAMESPACE:
+				return event + " " + reader.getPrefix() + "=" + reader.getNamespace() +
+						" line " + reader.getLineNumber();
+			case START_ELEMENT:
+				StringBuilder sb = new StringBuilder("START_ELEMENT {").append(reader.getNamespace()).append('}')
+						.append(reader.getName()).append(" line ").append(reader.getLineNumber())
+						.append(" depth ").append(reader.getDepth());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					sb.append("\n  {").append(reader.getAttributeNamespace(i)).append('}').append(reader.getAttributeName(i))
+							.append(" #").append(reader.getAttributeNameIndex(i))
+							.append(String.format(" @%08x", reader.getAttributeResourceId(i)))
+							.append("=").append(reader.getAttributeRawValue(i))
+							.append(" ").append(reader.getAttributeValueType(i))
+							.append(String.format(" 0x%08x", reader.getAttributeValueData(i)));
+					assertTrue(reader.getAttributeIndex(reader.getAttributeName(i)) <= i);
+				}
+				return sb.toString();
+			case END_ELEMENT:
+				assertEquals(0, reader.getAttributeCount());
+				return "END_ELEMENT {" + reader.getNamespace() + "}" + reader.getName() +
+						" line " + reader.getLineNumber() + " depth " + reader.getDepth();
+			case CDATA:
+				return "CDATA " + reader.getText() + " line " + reader.getLineNumber();
+			default:
+				return event.name();
+		}
+	}
+
 	private static void printDecodedXml(@Nonnull Path path) throws IOException {
 		byte[] bytes = Files.readAllBytes(path);
 		BinaryResourceFile binaryResource = new BinaryResourceFile(bytes);